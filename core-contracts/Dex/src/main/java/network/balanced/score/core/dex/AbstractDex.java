@@ -17,15 +17,19 @@
 package network.balanced.score.core.dex;
 
 import network.balanced.score.core.dex.db.NodeDB;
+import network.balanced.score.core.dex.utils.StableSwap;
 import network.balanced.score.lib.interfaces.Dex;
 import network.balanced.score.lib.structs.PrepDelegations;
 import network.balanced.score.lib.structs.RewardsDataEntry;
+import network.balanced.score.lib.utils.EnumerableSetDB;
 import score.Address;
+import score.ArrayDB;
 import score.BranchDB;
 import score.Context;
 import score.DictDB;
 import score.annotation.EventLog;
 import score.annotation.External;
+import score.annotation.Optional;
 import scorex.util.ArrayList;
 import scorex.util.HashMap;
 
@@ -58,6 +62,8 @@ public abstract class AbstractDex implements Dex {
             marketsToNames.set(SICXICX_POOL_ID, SICXICX_MARKET_NAME);
             dexOn.set(true);
         }
+
+        indexPools();
     }
 
     @EventLog(indexed = 2)
@@ -142,6 +148,15 @@ public abstract class AbstractDex implements Dex {
         only(admin);
         isContract(_address);
         staking.set(_address);
+        cachedSicxRate.set(null);
+    }
+
+    @External
+    public void updateSicxRate(BigInteger _rate) {
+        only(staking);
+        Context.require(_rate.signum() >= 0, TAG + ": Invalid sICX rate");
+        // a zero rate is sent when the Dex is unsubscribed, after which the rate is read from Staking again
+        cachedSicxRate.set(_rate.signum() == 0 ? null : _rate);
     }
 
     @External(readonly = true)
@@ -326,7 +341,7 @@ public abstract class AbstractDex implements Dex {
 
     @External(readonly = true)
     public BigInteger getSicxEarnings(Address _user) {
-        return sicxEarnings.getOrDefault(_user, BigInteger.ZERO);
+        return sicxEarnings.getOrDefault(_user, BigInteger.ZERO).add(getPendingSicxEarnings(_user));
     }
 
     @External(readonly = true)
@@ -392,6 +407,11 @@ public abstract class AbstractDex implements Dex {
         Address ATokenAddress = tokenA.get(id);
         Address BTokenAddress = tokenB.get(id);
 
+        if (stablePoolAmplification.get(id) != null) {
+            BigInteger basePrice = getSpotPrice(id);
+            return ATokenAddress.equals(poolBase.get(id)) ? basePrice : EXA.multiply(EXA).divide(basePrice);
+        }
+
         DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
         BigInteger ATokenTotal = totalTokensInPool.get(ATokenAddress);
         BigInteger BTokenTotal = totalTokensInPool.get(BTokenAddress);
@@ -447,46 +467,137 @@ public abstract class AbstractDex implements Dex {
         return getPrice(BigInteger.valueOf(namedMarkets.get(_name)));
     }
 
+    @External(readonly = true)
+    public BigInteger getPoolAmplification(BigInteger _id) {
+        return stablePoolAmplification.getOrDefault(_id.intValue(), BigInteger.ZERO);
+    }
+
+    // Time weighted average base price in quote over the last _window microseconds
+    @External(readonly = true)
+    public BigInteger getTWAP(BigInteger _id, BigInteger _window) {
+        isValidPoolId(_id);
+        int id = _id.intValue();
+        Context.require(id != SICXICX_POOL_ID, TAG + ": TWAP is not supported for the sICX/ICX pool");
+        Context.require(_window.signum() > 0, TAG + ": Window must be positive");
+
+        BigInteger lastUpdate = poolPriceLastUpdate.get(id);
+        Context.require(lastUpdate != null, TAG + ": No price history for pool " + id);
+
+        BigInteger now = BigInteger.valueOf(Context.getBlockTimestamp());
+        BigInteger start = now.subtract(_window);
+        BigInteger lastCumulative = poolPriceCumulative.getOrDefault(id, BigInteger.ZERO);
+        BigInteger price = getSpotPrice(id);
+        BigInteger currentCumulative = lastCumulative.add(price.multiply(now.subtract(lastUpdate)));
+
+        BigInteger startCumulative;
+        if (start.compareTo(lastUpdate) >= 0) {
+            startCumulative = lastCumulative.add(price.multiply(start.subtract(lastUpdate)));
+        } else {
+            startCumulative = getCumulativePriceAt(id, start, lastUpdate, lastCumulative);
+        }
+
+        return currentCumulative.subtract(startCumulative).divide(_window);
+    }
+
     @External(readonly = true)
     public BigInteger getICXBalance(Address _address) {
         BigInteger orderId = icxQueueOrderId.get(_address);
         if (orderId == null) {
             return BigInteger.ZERO;
         }
-        return icxQueue.getNode(orderId).getSize();
+
+        BigInteger deposit = icxOrderDeposit.get(_address);
+        if (deposit == null) {
+            return icxQueue.getNode(orderId).getSize();
+        }
+        return getBucketShare(orderId, deposit, icxQueue.createNodeInstance(orderId).getSize());
     }
 
     @External(readonly = true)
     public Map<String, Object> getPoolStats(BigInteger _id) {
         isValidPoolId(_id);
+        return getPoolStats(_id.intValue(), null);
+    }
+
+    @External(readonly = true)
+    public List<Map<String, Object>> getPoolStatsBatch(BigInteger[] _ids) {
+        BigInteger sicxRate = getBatchSicxRate(_ids);
+        List<Map<String, Object>> pools = new ArrayList<>();
+        for (BigInteger id : _ids) {
+            Map<String, Object> poolStats = getPoolStats(id.intValue(), sicxRate);
+            poolStats.put("id", id);
+            pools.add(poolStats);
+        }
+
+        return pools;
+    }
+
+    // [base, quote, total_supply, price] for each pool id
+    @External(readonly = true)
+    public List<List<BigInteger>> getPoolStatsBatchCompact(BigInteger[] _ids) {
+        BigInteger sicxRate = getBatchSicxRate(_ids);
+        List<List<BigInteger>> pools = new ArrayList<>();
+        for (BigInteger id : _ids) {
+            int poolId = id.intValue();
+            if (poolId == SICXICX_POOL_ID) {
+                BigInteger icxTotal = icxQueueTotal.getOrDefault(BigInteger.ZERO);
+                pools.add(List.of(BigInteger.ZERO, icxTotal, icxTotal, sicxRate));
+            } else {
+                DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(poolId);
+                BigInteger base = totalTokensInPool.get(poolBase.get(poolId));
+                BigInteger quote = totalTokensInPool.get(poolQuote.get(poolId));
+                pools.add(List.of(base, quote, poolLpTotal.get(poolId), getSpotPrice(poolId)));
+            }
+        }
+
+        return pools;
+    }
+
+    // Validates the ids and makes the staking call only once for all pools of the batch which need the sICX rate
+    private BigInteger getBatchSicxRate(BigInteger[] ids) {
+        Context.require(ids.length <= MAX_POOLS_PAGE_SIZE, TAG + ": Max batch size is " + MAX_POOLS_PAGE_SIZE);
+        Address sicxAddress = sicx.get();
+        boolean sicxRateUsed = false;
+        for (BigInteger id : ids) {
+            isValidPoolId(id);
+            int poolId = id.intValue();
+            sicxRateUsed = sicxRateUsed || poolId == SICXICX_POOL_ID || sicxAddress.equals(poolQuote.get(poolId));
+        }
+
+        return sicxRateUsed ? getSicxRate() : null;
+    }
+
+    private Map<String, Object> getPoolStats(int id, BigInteger sicxRate) {
         Map<String, Object> poolStats = new HashMap<>();
-        if (_id.intValue() == SICXICX_POOL_ID) {
+        if (id == SICXICX_POOL_ID) {
             poolStats.put("base_token", sicx.get());
             poolStats.put("quote_token", null);
             poolStats.put("base", BigInteger.ZERO);
             poolStats.put("quote", icxQueueTotal.getOrDefault(BigInteger.ZERO));
             poolStats.put("total_supply", icxQueueTotal.getOrDefault(BigInteger.ZERO));
-            poolStats.put("price", getPrice(_id));
+            poolStats.put("price", sicxRate == null ? getSicxRate() : sicxRate);
             poolStats.put("name", SICXICX_MARKET_NAME);
             poolStats.put("base_decimals", 18);
             poolStats.put("quote_decimals", 18);
             poolStats.put("min_quote", getRewardableAmount(null));
         } else {
-            Address baseToken = poolBase.get(_id.intValue());
-            Address quoteToken = poolQuote.get(_id.intValue());
-            String name = marketsToNames.get(_id.intValue());
-            DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(_id.intValue());
-
-            poolStats.put("base", totalTokensInPool.get(baseToken));
-            poolStats.put("quote", totalTokensInPool.get(quoteToken));
+            Address baseToken = poolBase.get(id);
+            Address quoteToken = poolQuote.get(id);
+            String name = marketsToNames.get(id);
+            DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
+            BigInteger base = totalTokensInPool.get(baseToken);
+            BigInteger quote = totalTokensInPool.get(quoteToken);
+
+            poolStats.put("base", base);
+            poolStats.put("quote", quote);
             poolStats.put("base_token", baseToken);
             poolStats.put("quote_token", quoteToken);
-            poolStats.put("total_supply", poolLpTotal.get(_id.intValue()));
-            poolStats.put("price", getPrice(_id));
+            poolStats.put("total_supply", poolLpTotal.get(id));
+            poolStats.put("price", getSpotPrice(id));
             poolStats.put("name", name);
             poolStats.put("base_decimals", tokenPrecisions.get(baseToken));
             poolStats.put("quote_decimals", tokenPrecisions.get(quoteToken));
-            poolStats.put("min_quote", getRewardableAmount(quoteToken));
+            poolStats.put("min_quote", getRewardableAmount(quoteToken, sicxRate));
         }
         return poolStats;
     }
@@ -502,6 +613,43 @@ public abstract class AbstractDex implements Dex {
         return poolStatsWithId;
     }
 
+    @External(readonly = true)
+    public List<Map<String, Object>> getPoolsForToken(Address _token, @Optional int _offset, @Optional int _limit) {
+        int limit = getPageSize(_limit);
+        ArrayDB<Integer> pools = tokenPools.at(_token);
+        int end = Math.min(pools.size(), _offset + limit);
+
+        List<Map<String, Object>> tokenPoolList = new ArrayList<>();
+        for (int i = Math.max(_offset, 0); i < end; i++) {
+            int id = pools.get(i);
+            tokenPoolList.add(Map.of(
+                    "id", BigInteger.valueOf(id),
+                    "base_token", poolBase.get(id),
+                    "quote_token", poolQuote.get(id)
+            ));
+        }
+
+        return tokenPoolList;
+    }
+
+    @External(readonly = true)
+    public List<Map<String, Object>> getAllPools(@Optional int _offset, @Optional int _limit) {
+        int limit = getPageSize(_limit);
+        int firstId = Math.max(_offset, 0) + SICXICX_POOL_ID;
+        int end = Math.min(nonce.get(), firstId + limit);
+
+        BigInteger[] ids = new BigInteger[Math.max(end - firstId, 0)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = BigInteger.valueOf(firstId + i);
+        }
+
+        return getPoolStatsBatch(ids);
+    }
+
+    private static int getPageSize(int limit) {
+        return limit <= 0 ? MAX_POOLS_PAGE_SIZE : Math.min(limit, MAX_POOLS_PAGE_SIZE);
+    }
+
     @External(readonly = true)
     public BigInteger totalDexAddresses(BigInteger _id) {
         return BigInteger.valueOf(activeAddresses.get(_id.intValue()).length());
@@ -527,6 +675,35 @@ public abstract class AbstractDex implements Dex {
         return rewardsData;
     }
 
+    @SuppressWarnings("unchecked")
+    @External(readonly = true)
+    public Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners) {
+        List<BigInteger> balances = new ArrayList<>();
+        Map<String, Object> rewardsData = new HashMap<>();
+        if (_name.equals(SICXICX_MARKET_NAME)) {
+            BigInteger poolId = BigInteger.valueOf(SICXICX_POOL_ID);
+            for (Address owner : _owners) {
+                balances.add(balanceOf(owner, poolId));
+            }
+            rewardsData.put("_balances", balances);
+            rewardsData.put("_totalSupply", totalSupply(poolId));
+            return rewardsData;
+        }
+        Context.require(lookupPid(_name) != null, TAG + ": Unsupported data source name");
+
+        return (Map<String, Object>) Context.call(stakedLp.get(), "getBalanceAndSupplyBatch", _name, _owners);
+    }
+
+    @External(readonly = true)
+    public Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner) {
+        Map<String, Map<String, BigInteger>> rewardsData = new HashMap<>();
+        for (String name : _names) {
+            rewardsData.put(name, getBalanceAndSupply(name, _owner));
+        }
+
+        return rewardsData;
+    }
+
     @External(readonly = true)
     public BigInteger getTotalValue(String _name, BigInteger _snapshot_id) {
         return totalSupply(BigInteger.valueOf(namedMarkets.get(_name)));
@@ -572,7 +749,321 @@ public abstract class AbstractDex implements Dex {
         Context.call(staking.get(), "delegate", (Object) prepDelegations);
     }
 
+    @External(readonly = true)
+    public Map<String, Object> quoteBestRoute(Address _fromToken, Address _toToken, BigInteger _amountIn,
+                                              @Optional int _maxHops) {
+        Context.require(_amountIn.signum() > 0, TAG + ": Amount in must be positive");
+        int maxHops = _maxHops <= 0 ? MAX_SWAP_PATH_LENGTH : Math.min(_maxHops, MAX_SWAP_PATH_LENGTH);
+        BigInteger lpFee = poolLpFee.get();
+        BigInteger balnFee = poolBalnFee.get();
+
+        // Each round extends the best path found to every token by one pool. Paths never revisit a token, so the
+        // pools they trade in are unchanged by earlier hops and the quote matches a swap along the path.
+        Map<Address, BigInteger> amounts = new HashMap<>();
+        Map<Address, List<Address>> paths = new HashMap<>();
+        List<Address> tokens = new ArrayList<>();
+        amounts.put(_fromToken, _amountIn);
+        paths.put(_fromToken, new ArrayList<>());
+        tokens.add(_fromToken);
+
+        Map<Integer, BigInteger[]> reserves = new HashMap<>();
+        BigInteger bestAmount = BigInteger.ZERO;
+        List<Address> bestPath = new ArrayList<>();
+        for (int hop = 0; hop < maxHops && !tokens.isEmpty(); hop++) {
+            Map<Address, BigInteger> nextAmounts = new HashMap<>();
+            Map<Address, List<Address>> nextPaths = new HashMap<>();
+            List<Address> nextTokens = new ArrayList<>();
+            for (Address token : tokens) {
+                BigInteger amount = amounts.get(token);
+                List<Address> path = paths.get(token);
+                ArrayDB<Integer> pools = tokenPools.at(token);
+                int poolCount = pools.size();
+                for (int i = 0; i < poolCount; i++) {
+                    int id = pools.get(i);
+                    if (!active.getOrDefault(id, false)) {
+                        continue;
+                    }
+
+                    Address base = poolBase.get(id);
+                    boolean isBase = token.equals(base);
+                    Address other = isBase ? poolQuote.get(id) : base;
+                    if (other.equals(_fromToken) || path.contains(other)) {
+                        continue;
+                    }
+
+                    BigInteger[] totals = reserves.get(id);
+                    if (totals == null) {
+                        DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
+                        totals = new BigInteger[]{totalTokensInPool.getOrDefault(base, BigInteger.ZERO),
+                                totalTokensInPool.getOrDefault(poolQuote.get(id), BigInteger.ZERO)};
+                        reserves.put(id, totals);
+                    }
+
+                    BigInteger fromTotal = isBase ? totals[0] : totals[1];
+                    BigInteger toTotal = isBase ? totals[1] : totals[0];
+                    BigInteger output = getPoolAmountOut(id, token, other, amount, fromTotal, toTotal, lpFee,
+                            balnFee);
+                    BigInteger previousOutput = nextAmounts.get(other);
+                    if (output.signum() <= 0 || (previousOutput != null && previousOutput.compareTo(output) >= 0)) {
+                        continue;
+                    }
+
+                    if (previousOutput == null && !other.equals(_toToken)) {
+                        nextTokens.add(other);
+                    }
+                    List<Address> nextPath = new ArrayList<>(path);
+                    nextPath.add(other);
+                    nextAmounts.put(other, output);
+                    nextPaths.put(other, nextPath);
+                }
+            }
+
+            BigInteger toAmount = nextAmounts.get(_toToken);
+            if (toAmount != null && toAmount.compareTo(bestAmount) > 0) {
+                bestAmount = toAmount;
+                bestPath = nextPaths.get(_toToken);
+            }
+
+            amounts = nextAmounts;
+            paths = nextPaths;
+            tokens = nextTokens;
+        }
+
+        return Map.of(
+                "path", bestPath,
+                "amount", bestAmount
+        );
+    }
+
+    @External(readonly = true)
+    public BigInteger getSwapOutput(Address _fromToken, Address _toToken, BigInteger _amountIn) {
+        return getSwapOutputBatch(_fromToken, _toToken, new BigInteger[]{_amountIn}).get(0);
+    }
+
+    @External(readonly = true)
+    public BigInteger getSwapInput(Address _fromToken, Address _toToken, BigInteger _amountOut) {
+        return getSwapInputBatch(_fromToken, _toToken, new BigInteger[]{_amountOut}).get(0);
+    }
+
+    // Amounts of _toToken exchange would send for each amount of _fromToken, each against the current pool totals
+    @External(readonly = true)
+    public List<BigInteger> getSwapOutputBatch(Address _fromToken, Address _toToken, BigInteger[] _amountsIn) {
+        Context.require(_amountsIn.length <= MAX_SWAP_QUOTE_BATCH_SIZE,
+                TAG + ": Max batch size is " + MAX_SWAP_QUOTE_BATCH_SIZE);
+        int id = getSwapPoolId(_fromToken, _toToken);
+        DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
+        BigInteger fromTotal = totalTokensInPool.get(_fromToken);
+        BigInteger toTotal = totalTokensInPool.get(_toToken);
+        BigInteger lpFee = poolLpFee.get();
+        BigInteger balnFee = poolBalnFee.get();
+
+        List<BigInteger> amountsOut = new ArrayList<>();
+        for (BigInteger amountIn : _amountsIn) {
+            Context.require(amountIn.signum() > 0, TAG + ": Invalid input amount");
+            amountsOut.add(getPoolAmountOut(id, _fromToken, _toToken, amountIn, fromTotal, toTotal, lpFee, balnFee));
+        }
+
+        return amountsOut;
+    }
+
+    // Amounts of _fromToken needed for exchange to send each amount of _toToken, each against the current pool totals
+    @External(readonly = true)
+    public List<BigInteger> getSwapInputBatch(Address _fromToken, Address _toToken, BigInteger[] _amountsOut) {
+        Context.require(_amountsOut.length <= MAX_SWAP_QUOTE_BATCH_SIZE,
+                TAG + ": Max batch size is " + MAX_SWAP_QUOTE_BATCH_SIZE);
+        int id = getSwapPoolId(_fromToken, _toToken);
+        DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
+        BigInteger fromTotal = totalTokensInPool.get(_fromToken);
+        BigInteger toTotal = totalTokensInPool.get(_toToken);
+        BigInteger lpFee = poolLpFee.get();
+        BigInteger balnFee = poolBalnFee.get();
+
+        List<BigInteger> amountsIn = new ArrayList<>();
+        for (BigInteger amountOut : _amountsOut) {
+            Context.require(amountOut.signum() > 0, TAG + ": Invalid output amount");
+            amountsIn.add(getPoolAmountIn(id, _fromToken, _toToken, amountOut, fromTotal, toTotal, lpFee, balnFee));
+        }
+
+        return amountsIn;
+    }
+
+    // Amount sent out by exchange for a trade of value against the given pool totals
+    static BigInteger getAmountOut(BigInteger value, BigInteger fromTotal, BigInteger toTotal, BigInteger lpFee,
+                                   BigInteger balnFee) {
+        if (fromTotal.signum() == 0 || toTotal.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger fees = value.multiply(lpFee).divide(FEE_SCALE).add(value.multiply(balnFee).divide(FEE_SCALE));
+        BigInteger newFromTotal = fromTotal.add(value.subtract(fees));
+        return toTotal.subtract(fromTotal.multiply(toTotal).divide(newFromTotal));
+    }
+
+    // Smallest trade of fromToken, up to fee rounding, for which exchange sends at least amountOut
+    static BigInteger getAmountIn(BigInteger amountOut, BigInteger fromTotal, BigInteger toTotal, BigInteger lpFee,
+                                  BigInteger balnFee) {
+        Context.require(amountOut.compareTo(toTotal) < 0, TAG + ": Insufficient liquidity for output amount");
+
+        BigInteger newToTotal = toTotal.subtract(amountOut).add(BigInteger.ONE);
+        BigInteger inputWithoutFees = fromTotal.multiply(toTotal).divide(newToTotal).subtract(fromTotal)
+                .add(BigInteger.ONE);
+        BigInteger value = inputWithoutFees.multiply(FEE_SCALE).divide(FEE_SCALE.subtract(lpFee).subtract(balnFee));
+        while (getAmountOut(value, fromTotal, toTotal, lpFee, balnFee).compareTo(amountOut) < 0) {
+            value = value.add(BigInteger.ONE);
+        }
+
+        return value;
+    }
+
+    // Amount sent out by exchange for a trade of value against the given totals, on the curve of the pool
+    BigInteger getPoolAmountOut(int id, Address fromToken, Address toToken, BigInteger value, BigInteger fromTotal,
+                                BigInteger toTotal, BigInteger lpFee, BigInteger balnFee) {
+        BigInteger amplification = stablePoolAmplification.get(id);
+        if (amplification == null) {
+            return getAmountOut(value, fromTotal, toTotal, lpFee, balnFee);
+        }
+
+        BigInteger fees = value.multiply(lpFee).divide(FEE_SCALE).add(value.multiply(balnFee).divide(FEE_SCALE));
+        return StableSwap.getAmountOut(value.subtract(fees), fromTotal, toTotal, getPrecisionScale(fromToken),
+                getPrecisionScale(toToken), amplification);
+    }
+
+    BigInteger getPoolAmountIn(int id, Address fromToken, Address toToken, BigInteger amountOut, BigInteger fromTotal,
+                               BigInteger toTotal, BigInteger lpFee, BigInteger balnFee) {
+        BigInteger amplification = stablePoolAmplification.get(id);
+        if (amplification == null) {
+            return getAmountIn(amountOut, fromTotal, toTotal, lpFee, balnFee);
+        }
+
+        Context.require(amountOut.compareTo(toTotal) < 0, TAG + ": Insufficient liquidity for output amount");
+        BigInteger inputWithoutFees = StableSwap.getAmountIn(amountOut, fromTotal, toTotal,
+                getPrecisionScale(fromToken), getPrecisionScale(toToken), amplification);
+        BigInteger value = inputWithoutFees.multiply(FEE_SCALE).divide(FEE_SCALE.subtract(lpFee).subtract(balnFee));
+        while (getPoolAmountOut(id, fromToken, toToken, value, fromTotal, toTotal, lpFee, balnFee)
+                .compareTo(amountOut) < 0) {
+            value = value.add(BigInteger.ONE);
+        }
+
+        return value;
+    }
+
+    // Factor scaling balances of the token to 18 decimals
+    private BigInteger getPrecisionScale(Address token) {
+        return pow(BigInteger.TEN, 18 - tokenPrecisions.get(token).intValue());
+    }
+
+    // Adds the pools created since the last call to the per token pool index
+    void indexPools() {
+        int end = nonce.get();
+        for (int id = tokenPoolsNonce.getOrDefault(SICXICX_POOL_ID + 1); id < end; id++) {
+            tokenPools.at(poolBase.get(id)).add(id);
+            tokenPools.at(poolQuote.get(id)).add(id);
+        }
+        tokenPoolsNonce.set(end);
+    }
+
+    // Adds the price held since the last update to the pool's cumulative price, using the totals before this
+    // transaction changes them. Only the first change of a pool in a block moves the accumulator.
+    void updatePriceCumulative(int id) {
+        if (id == SICXICX_POOL_ID) {
+            return;
+        }
+
+        BigInteger now = BigInteger.valueOf(Context.getBlockTimestamp());
+        BigInteger lastUpdate = poolPriceLastUpdate.get(id);
+        if (now.equals(lastUpdate)) {
+            return;
+        }
+
+        BigInteger cumulative = poolPriceCumulative.getOrDefault(id, BigInteger.ZERO);
+        if (lastUpdate != null) {
+            cumulative = cumulative.add(getSpotPrice(id).multiply(now.subtract(lastUpdate)));
+            poolPriceCumulative.set(id, cumulative);
+        }
+        poolPriceLastUpdate.set(id, now);
+
+        DictDB<Integer, BigInteger> timestamps = twapObservationTimestamps.at(id);
+        int count = twapObservationCount.getOrDefault(id, 0);
+        int index = twapObservationIndex.getOrDefault(id, 0);
+        if (count > 0 && now.subtract(timestamps.get(index)).compareTo(TWAP_OBSERVATION_INTERVAL) < 0) {
+            return;
+        }
+
+        if (count > 0) {
+            index = (index + 1) % TWAP_OBSERVATIONS;
+        }
+        if (count < TWAP_OBSERVATIONS) {
+            twapObservationCount.set(id, count + 1);
+        }
+        timestamps.set(index, now);
+        twapObservationCumulatives.at(id).set(index, cumulative);
+        twapObservationIndex.set(id, index);
+    }
+
+    private BigInteger getSpotPrice(int id) {
+        DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
+        BigInteger baseTotal = totalTokensInPool.getOrDefault(poolBase.get(id), BigInteger.ZERO);
+        BigInteger quoteTotal = totalTokensInPool.getOrDefault(poolQuote.get(id), BigInteger.ZERO);
+        if (baseTotal.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger amplification = stablePoolAmplification.get(id);
+        if (amplification != null) {
+            return StableSwap.getPrice(baseTotal, quoteTotal, getPrecisionScale(poolBase.get(id)),
+                    getPrecisionScale(poolQuote.get(id)), amplification);
+        }
+
+        return quoteTotal.multiply(EXA).divide(baseTotal);
+    }
+
+    // Interpolates the cumulative price at a time before the last update between the surrounding observations
+    private BigInteger getCumulativePriceAt(int id, BigInteger time, BigInteger lastUpdate,
+                                            BigInteger lastCumulative) {
+        DictDB<Integer, BigInteger> timestamps = twapObservationTimestamps.at(id);
+        DictDB<Integer, BigInteger> cumulatives = twapObservationCumulatives.at(id);
+        int count = twapObservationCount.getOrDefault(id, 0);
+        int oldest = (twapObservationIndex.getOrDefault(id, 0) + TWAP_OBSERVATIONS - count + 1) % TWAP_OBSERVATIONS;
+        Context.require(count > 0 && timestamps.get(oldest).compareTo(time) <= 0,
+                TAG + ": Window exceeds the price history of pool " + id);
+
+        // Binary search for the latest observation at or before time, in chronological order
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) / 2;
+            if (timestamps.get((oldest + mid) % TWAP_OBSERVATIONS).compareTo(time) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int before = (oldest + low) % TWAP_OBSERVATIONS;
+        BigInteger beforeTime = timestamps.get(before);
+        BigInteger beforeCumulative = cumulatives.get(before);
+        BigInteger afterTime = lastUpdate;
+        BigInteger afterCumulative = lastCumulative;
+        if (low < count - 1) {
+            int after = (oldest + low + 1) % TWAP_OBSERVATIONS;
+            afterTime = timestamps.get(after);
+            afterCumulative = cumulatives.get(after);
+        }
+
+        if (afterTime.equals(beforeTime)) {
+            return beforeCumulative;
+        }
+
+        BigInteger elapsed = time.subtract(beforeTime);
+        return beforeCumulative.add(afterCumulative.subtract(beforeCumulative).multiply(elapsed)
+                .divide(afterTime.subtract(beforeTime)));
+    }
+
     protected BigInteger getSicxRate() {
+        BigInteger rate = cachedSicxRate.get();
+        if (rate != null) {
+            return rate;
+        }
         return (BigInteger) Context.call(staking.get(), "getTodayRate");
     }
 
@@ -581,10 +1072,15 @@ public abstract class AbstractDex implements Dex {
     }
 
     BigInteger getRewardableAmount(Address tokenAddress) {
+        return getRewardableAmount(tokenAddress, null);
+    }
+
+    BigInteger getRewardableAmount(Address tokenAddress, BigInteger sicxRate) {
         if (tokenAddress == null) {
             return BigInteger.TEN.multiply(EXA);
         } else if (sicx.get().equals(tokenAddress)) {
-            return (BigInteger.TEN.multiply(EXA.multiply(EXA))).divide(getSicxRate());
+            BigInteger rate = sicxRate == null ? getSicxRate() : sicxRate;
+            return (BigInteger.TEN.multiply(EXA.multiply(EXA))).divide(rate);
         } else if (bnUSD.get().equals(tokenAddress)) {
             return BigInteger.TEN.multiply(EXA);
         }
@@ -593,15 +1089,58 @@ public abstract class AbstractDex implements Dex {
 
     void exchange(Address fromToken, Address toToken, Address sender,
                   Address receiver, BigInteger value, BigInteger minimumReceive) {
+        swapPath(fromToken, new Address[]{toToken}, sender, receiver, value, minimumReceive);
+    }
 
+    // Trades through every pool of the path in one call. Intermediate amounts stay in the pool totals of the Dex,
+    // only the last token is sent to the receiver and the baln fees are sent once per quote token.
+    void swapPath(Address fromToken, Address[] path, Address sender, Address receiver, BigInteger value,
+                  BigInteger minimumReceive) {
         if (minimumReceive == null) {
             minimumReceive = BigInteger.ZERO;
         }
 
+        Context.require(path.length > 0, TAG + ": Swap path is empty");
+        Context.require(path.length <= MAX_SWAP_PATH_LENGTH, TAG + ": Passed max swaps of " + MAX_SWAP_PATH_LENGTH);
+
+        Map<Address, BigInteger> balnFees = new HashMap<>();
+        Address dexAddress = Context.getAddress();
+        Address currentToken = fromToken;
+        BigInteger amount = value;
+        for (int i = 0; i < path.length; i++) {
+            Address toToken = path[i];
+            Context.require(toToken != null, TAG + ": ICX is not supported in swap paths, use the ICX swap API.");
+            Address hopReceiver = i == path.length - 1 ? receiver : dexAddress;
+            amount = swapInPool(currentToken, toToken, sender, hopReceiver, amount, balnFees);
+            currentToken = toToken;
+        }
+
+        // Revert the transaction if the below slippage, as specified in _minimum_receive
+        Context.require(amount.compareTo(minimumReceive) >= 0,
+                TAG + ": MinimumReceiveError: Receive amount " + amount + " below supplied minimum");
+
+        // Send the trader their funds
+        Context.call(currentToken, "transfer", receiver, amount);
+
+        // Send the platform fees to the fee handler SCORE
+        for (Map.Entry<Address, BigInteger> fee : balnFees.entrySet()) {
+            Context.call(fee.getKey(), "transfer", feeHandler.get(), fee.getValue());
+        }
+    }
+
+    // Id of the pool exchange trades fromToken to toToken in
+    private int getSwapPoolId(Address fromToken, Address toToken) {
         int id = getPoolId(fromToken, toToken).intValue();
         isValidPoolId(id);
         Context.require(id != SICXICX_POOL_ID, TAG + ":  Not supported on this API, use the ICX swap API.");
         Context.require(active.getOrDefault(id, false), TAG + ": Pool is not active");
+        return id;
+    }
+
+    private BigInteger swapInPool(Address fromToken, Address toToken, Address sender, Address receiver,
+                                  BigInteger value, Map<Address, BigInteger> collectedBalnFees) {
+        int id = getSwapPoolId(fromToken, toToken);
+        updatePriceCumulative(id);
 
         BigInteger lpFees = value.multiply(poolLpFee.get()).divide(FEE_SCALE);
         BigInteger balnFees = value.multiply(poolBalnFee.get()).divide(FEE_SCALE);
@@ -613,7 +1152,8 @@ public abstract class AbstractDex implements Dex {
         Address poolQuoteToken = isSell ? toToken : fromToken;
 
         // We consider the trade in terms of toToken (token we are trading to), and fromToken (token we are trading
-        // away) in the pool. It must obey the xy=k constant product formula.
+        // away) in the pool. It must obey the xy=k constant product formula, or the StableSwap invariant for stable
+        // pools.
 
         DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
         BigInteger oldFromToken = totalTokensInPool.get(fromToken);
@@ -624,16 +1164,12 @@ public abstract class AbstractDex implements Dex {
         BigInteger inputWithoutFees = value.subtract(fees);
         BigInteger newFromToken = oldFromToken.add(inputWithoutFees);
 
-        // Compute the new fromToken according to the constant product formula
-        BigInteger newToToken = (oldFromToken.multiply(oldToToken)).divide(newFromToken);
-
-        // Send the trader the amount of toToken removed from the pool by the constant product formula
-        BigInteger sendAmount = oldToToken.subtract(newToToken);
+        // Send the trader the amount of toToken removed from the pool by the curve of the pool
+        BigInteger sendAmount = getPoolAmountOut(id, fromToken, toToken, value, oldFromToken, oldToToken,
+                poolLpFee.get(), poolBalnFee.get());
+        BigInteger newToToken = oldToToken.subtract(sendAmount);
 
         Context.require(sendAmount.compareTo(BigInteger.ZERO) > 0, TAG + ": Invalid output amount in trade.");
-        // Revert the transaction if the below slippage, as specified in _minimum_receive
-        Context.require(sendAmount.compareTo(minimumReceive) >= 0,
-                TAG + ": MinimumReceiveError: Receive amount " + sendAmount + " below supplied minimum");
 
         // Apply fees to fromToken after computing constant product. lpFees are credited to the LPs, the rest are
         // sent to BALN holders.
@@ -644,9 +1180,9 @@ public abstract class AbstractDex implements Dex {
             oldToToken = newToToken;
 
             newFromToken = oldFromToken.add(balnFees);
-            newToToken = (oldFromToken.multiply(oldToToken)).divide(newFromToken);
-
-            balnFees = oldToToken.subtract(newToToken);
+            balnFees = getPoolAmountOut(id, fromToken, toToken, balnFees, oldFromToken, oldToToken, BigInteger.ZERO,
+                    BigInteger.ZERO);
+            newToToken = oldToToken.subtract(balnFees);
         }
 
         // Save updated pool totals
@@ -657,11 +1193,8 @@ public abstract class AbstractDex implements Dex {
         BigInteger totalBase = isSell ? newFromToken : newToToken;
         BigInteger totalQuote = isSell ? newToToken : newFromToken;
 
-        // Send the trader their funds
-        Context.call(toToken, "transfer", receiver, sendAmount);
-
-        // Send the platform fees to the fee handler SCORE
-        Context.call(poolQuoteToken, "transfer", feeHandler.get(), balnFees);
+        BigInteger collected = collectedBalnFees.get(poolQuoteToken);
+        collectedBalnFees.put(poolQuoteToken, collected == null ? balnFees : collected.add(balnFees));
 
         // Broadcast pool ending price
         BigInteger effectiveFillPrice = (value.multiply(EXA)).divide(sendAmount);
@@ -674,6 +1207,8 @@ public abstract class AbstractDex implements Dex {
         Swap(BigInteger.valueOf(id), poolBaseToken, fromToken, toToken, sender, receiver, value, sendAmount,
                 BigInteger.valueOf(Context.getBlockTimestamp()), lpFees, initialBalnFees, totalBase, totalQuote, endingPrice
                 , effectiveFillPrice);
+
+        return sendAmount;
     }
 
     void donate(Address fromToken, Address toToken, BigInteger value) {
@@ -681,6 +1216,7 @@ public abstract class AbstractDex implements Dex {
         isValidPoolId(id);
         Context.require(id != SICXICX_POOL_ID, TAG + ":  Not supported on this API, use the ICX swap API.");
         Context.require(active.getOrDefault(id, false), TAG + ": Pool is not active");
+        updatePriceCumulative(id);
 
         DictDB<Address, BigInteger> totalTokensInPool = poolTotal.at(id);
         BigInteger oldFromToken = totalTokensInPool.get(fromToken);
@@ -690,11 +1226,161 @@ public abstract class AbstractDex implements Dex {
         totalTokensInPool.set(fromToken, newFromToken);
     }
 
+    // Adds an order to the open bucket, a new bucket is appended to the queue if there is none
+    void addIcxOrder(Address user, BigInteger value) {
+        BigInteger bucketId = icxQueueOpenBucket.get();
+        int orders = 1;
+        if (bucketId == null) {
+            bucketId = icxQueueLastId.getOrDefault(BigInteger.ZERO).max(icxQueue.getTailId()).add(BigInteger.ONE);
+            icxQueueLastId.set(bucketId);
+            icxQueue.append(value, MINT_ADDRESS, bucketId);
+            icxBucketDeposits.set(bucketId, value);
+            icxQueueOpenBucket.set(bucketId);
+        } else {
+            NodeDB bucket = icxQueue.getNode(bucketId);
+            bucket.setSize(bucket.getSize().add(value));
+            icxBucketDeposits.set(bucketId, icxBucketDeposits.get(bucketId).add(value));
+            orders = icxBucketOrders.get(bucketId) + 1;
+        }
+
+        icxBucketOrders.set(bucketId, orders);
+        if (orders >= ICX_QUEUE_BUCKET_ORDERS) {
+            icxQueueOpenBucket.set(null);
+        }
+
+        icxQueueOrderId.set(user, bucketId);
+        icxOrderDeposit.set(user, value);
+        icxOrderEarningsIndex.set(user, icxBucketEarningsPerIcx.get(bucketId));
+        getIcxBucketMembers(bucketId).add(user);
+    }
+
+    // Removes the order of the user from the queue and returns the ICX left in it. The sICX earned by an order in a
+    // bucket is added to its sicxEarnings.
+    BigInteger removeIcxOrder(Address user) {
+        BigInteger orderId = icxQueueOrderId.get(user);
+        BigInteger deposit = icxOrderDeposit.get(user);
+        if (deposit == null) {
+            BigInteger size = icxQueue.getNode(orderId).getSize();
+            icxQueue.remove(orderId);
+            icxQueueOrderId.set(user, null);
+            return size;
+        }
+
+        settleIcxOrderEarnings(user);
+        NodeDB bucket = icxQueue.createNodeInstance(orderId);
+        BigInteger bucketSize = bucket.getSize();
+        BigInteger size = getBucketShare(orderId, deposit, bucketSize);
+        icxQueueOrderId.set(user, null);
+        icxOrderDeposit.set(user, null);
+        icxOrderEarningsIndex.set(user, null);
+        getIcxBucketMembers(orderId).remove(user);
+
+        int orders = icxBucketOrders.get(orderId) - 1;
+        if (orders == 0) {
+            icxBucketDeposits.set(orderId, null);
+            icxBucketEarningsPerIcx.set(orderId, null);
+            icxBucketOrders.set(orderId, null);
+            if (bucket.exists()) {
+                icxQueue.remove(orderId);
+            }
+            if (orderId.equals(icxQueueOpenBucket.get())) {
+                icxQueueOpenBucket.set(null);
+            }
+        } else {
+            icxBucketDeposits.set(orderId, icxBucketDeposits.get(orderId).subtract(deposit));
+            icxBucketOrders.set(orderId, orders);
+            if (bucket.exists()) {
+                bucket.setSize(bucketSize.subtract(size));
+            }
+        }
+
+        return size;
+    }
+
+    // Closes the order of the user if swaps consumed its bucket, the sICX it earned is added to its sicxEarnings
+    boolean closeFilledIcxOrder(Address user) {
+        BigInteger orderId = icxQueueOrderId.get(user);
+        if (orderId == null || icxOrderDeposit.get(user) == null || icxQueue.createNodeInstance(orderId).exists()) {
+            return false;
+        }
+
+        removeIcxOrder(user);
+        activeAddresses.get(SICXICX_POOL_ID).remove(user);
+        return true;
+    }
+
+    // Adds the sICX earned by the order of the user since it was last settled to its sicxEarnings
+    void settleIcxOrderEarnings(Address user) {
+        BigInteger bucketId = icxQueueOrderId.get(user);
+        if (bucketId == null || icxOrderDeposit.get(user) == null) {
+            return;
+        }
+
+        BigInteger pendingEarnings = getPendingSicxEarnings(user);
+        icxOrderEarningsIndex.set(user, icxBucketEarningsPerIcx.get(bucketId));
+        if (pendingEarnings.signum() > 0) {
+            sicxEarnings.set(user, sicxEarnings.getOrDefault(user, BigInteger.ZERO).add(pendingEarnings));
+        }
+    }
+
+    private BigInteger getPendingSicxEarnings(Address user) {
+        BigInteger deposit = icxOrderDeposit.get(user);
+        if (deposit == null) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger bucketId = icxQueueOrderId.get(user);
+        BigInteger earningsPerIcx = icxBucketEarningsPerIcx.getOrDefault(bucketId, BigInteger.ZERO)
+                .subtract(icxOrderEarningsIndex.getOrDefault(user, BigInteger.ZERO));
+        return earningsPerIcx.multiply(deposit).divide(EXA);
+    }
+
+    // Orders of a bucket, used to tell Rewards the balances of its members after swaps changed the bucket
+    static EnumerableSetDB<Address> getIcxBucketMembers(BigInteger bucketId) {
+        return new EnumerableSetDB<>(ICX_BUCKET_MEMBERS + "|" + bucketId, Address.class);
+    }
+
+    // Sends Rewards the current balance of every order in the bucket, the orders are closed if swaps consumed it
+    void updateIcxBucketRewardsData(BigInteger bucketId) {
+        Integer orders = icxBucketOrders.get(bucketId);
+        Context.require(orders != null, TAG + ": No orders in bucket " + bucketId);
+
+        NodeDB bucket = icxQueue.createNodeInstance(bucketId);
+        boolean consumed = !bucket.exists();
+        BigInteger bucketSize = bucket.getSize();
+        EnumerableSetDB<Address> members = getIcxBucketMembers(bucketId);
+        List<RewardsDataEntry> rewardsData = new ArrayList<>();
+        // From the end, so that closing an order does not move the members left to visit
+        for (int i = members.length() - 1; i >= 0; i--) {
+            Address member = members.at(i);
+            RewardsDataEntry rewardsEntry = new RewardsDataEntry();
+            rewardsEntry._user = member;
+            if (consumed) {
+                rewardsEntry._balance = BigInteger.ZERO;
+                closeFilledIcxOrder(member);
+            } else {
+                rewardsEntry._balance = getBucketShare(bucketId, icxOrderDeposit.get(member), bucketSize);
+            }
+            rewardsData.add(rewardsEntry);
+        }
+
+        Context.call(rewards.get(), "updateBalanceAndSupplyBatch", SICXICX_MARKET_NAME,
+                icxQueueTotal.getOrDefault(BigInteger.ZERO), rewardsData);
+    }
+
+    // Pro-rata part of amount for an order with the given deposit, the last order of a bucket gets all of it
+    private BigInteger getBucketShare(BigInteger bucketId, BigInteger deposit, BigInteger amount) {
+        BigInteger deposits = icxBucketDeposits.get(bucketId);
+        if (deposit.equals(deposits)) {
+            return amount;
+        }
+        return amount.multiply(deposit).divide(deposits);
+    }
+
     void swapIcx(Address sender, BigInteger value) {
         BigInteger sicxIcxPrice = getSicxRate();
 
         BigInteger oldIcxTotal = icxQueueTotal.getOrDefault(BigInteger.ZERO);
-        List<RewardsDataEntry> oldData = new ArrayList<>();
 
         BigInteger balnFees = (value.multiply(icxBalnFee.get())).divide(FEE_SCALE);
         BigInteger conversionFees = value.multiply(icxConversionFee.get()).divide(FEE_SCALE);
@@ -713,32 +1399,41 @@ public abstract class AbstractDex implements Dex {
             if ((icxQueue.size().equals(BigInteger.ZERO)) || (iterations > ICX_QUEUE_FILL_DEPTH)) {
                 Context.revert(TAG + ": InsufficientLiquidityError: Unable to fill " + orderRemainingIcx + " ICX.");
             }
+            BigInteger counterpartyId = icxQueue.getHeadId();
             NodeDB counterpartyOrder = icxQueue.getHeadNode();
-            Address counterpartyAddress = counterpartyOrder.getUser();
             BigInteger counterpartyIcx = counterpartyOrder.getSize();
-
-            RewardsDataEntry rewardsEntry = new RewardsDataEntry();
-            rewardsEntry._user = counterpartyAddress;
-            rewardsEntry._balance = counterpartyIcx;
-
-            oldData.add(rewardsEntry);
             BigInteger matchedIcx = counterpartyIcx.min(orderRemainingIcx);
             orderRemainingIcx = orderRemainingIcx.subtract(matchedIcx);
-
             boolean counterpartyFilled = matchedIcx.equals(counterpartyIcx);
+            BigInteger lpSicxEarnings = (lpSicxSize.multiply(matchedIcx)).divide(orderIcxValue);
+
+            BigInteger deposits = icxBucketDeposits.get(counterpartyId);
+            if (deposits == null) {
+                // Order placed before buckets, it becomes a bucket holding only this order
+                deposits = counterpartyIcx;
+                Address counterpartyAddress = counterpartyOrder.getUser();
+                icxBucketDeposits.set(counterpartyId, deposits);
+                icxBucketOrders.set(counterpartyId, 1);
+                icxOrderDeposit.set(counterpartyAddress, deposits);
+                getIcxBucketMembers(counterpartyId).add(counterpartyAddress);
+            }
+
+            // The orders of a bucket are settled pro-rata when they are next touched, Rewards included
+            if (lpSicxEarnings.signum() > 0) {
+                BigInteger earningsPerIcx = icxBucketEarningsPerIcx.getOrDefault(counterpartyId, BigInteger.ZERO);
+                icxBucketEarningsPerIcx.set(counterpartyId,
+                        earningsPerIcx.add(lpSicxEarnings.multiply(EXA).divide(deposits)));
+            }
+            if (counterpartyId.equals(icxQueueOpenBucket.get())) {
+                icxQueueOpenBucket.set(null);
+            }
+
             if (counterpartyFilled) {
                 icxQueue.removeHead();
-                icxQueueOrderId.set(counterpartyAddress, null);
-                activeAddresses.get(SICXICX_POOL_ID).remove(counterpartyAddress);
             } else {
-                BigInteger newCounterpartyValue = counterpartyIcx.subtract(matchedIcx);
-                counterpartyOrder.setSize(newCounterpartyValue);
+                counterpartyOrder.setSize(counterpartyIcx.subtract(matchedIcx));
             }
 
-            BigInteger lpSicxEarnings = (lpSicxSize.multiply(matchedIcx)).divide(orderIcxValue);
-            BigInteger newSicxEarnings = getSicxEarnings(counterpartyAddress).add(lpSicxEarnings);
-            sicxEarnings.set(counterpartyAddress, newSicxEarnings);
-
             if (orderRemainingIcx.compareTo(BigInteger.ZERO) == 0) {
                 filled = true;
             }
@@ -752,8 +1447,6 @@ public abstract class AbstractDex implements Dex {
                 orderIcxValue, BigInteger.valueOf(Context.getBlockTimestamp()), conversionFees, balnFees, newIcxTotal
                 , BigInteger.ZERO, sicxIcxPrice, effectiveFillPrice);
 
-        Context.call(rewards.get(), "updateBatchRewardsData", SICXICX_MARKET_NAME, oldIcxTotal,
-                oldData);
         Context.call(sicxAddress, "transfer", feeHandler.get(), balnFees);
         Context.transfer(sender, orderIcxValue);
     }
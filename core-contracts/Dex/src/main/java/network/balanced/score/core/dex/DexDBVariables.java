@@ -68,6 +68,24 @@ public class DexDBVariables {
     private static final String TOKEN_PRECISIONS = "token_precisions";
     private static final String CURRENT_TX = "current_tx";
     private static final String CONTINUOUS_REWARDS_DAY = "continuous_rewards_day";
+    private static final String TOKEN_POOLS = "token_pools";
+    private static final String TOKEN_POOLS_NONCE = "token_pools_nonce";
+    private static final String CACHED_SICX_RATE = "cached_sicx_rate";
+    private static final String ICX_QUEUE_LAST_ID = "icxQueueLastId";
+    private static final String ICX_QUEUE_OPEN_BUCKET = "icxQueueOpenBucket";
+    private static final String ICX_BUCKET_DEPOSITS = "icxBucketDeposits";
+    private static final String ICX_BUCKET_EARNINGS_PER_ICX = "icxBucketEarningsPerIcx";
+    private static final String ICX_BUCKET_ORDERS = "icxBucketOrders";
+    private static final String ICX_ORDER_DEPOSIT = "icxOrderDeposit";
+    private static final String ICX_ORDER_EARNINGS_INDEX = "icxOrderEarningsIndex";
+    static final String ICX_BUCKET_MEMBERS = "icxBucketMembers";
+    private static final String POOL_PRICE_CUMULATIVE = "poolPriceCumulative";
+    private static final String POOL_PRICE_LAST_UPDATE = "poolPriceLastUpdate";
+    private static final String TWAP_OBSERVATION_TIMESTAMPS = "twapObservationTimestamps";
+    private static final String TWAP_OBSERVATION_CUMULATIVES = "twapObservationCumulatives";
+    private static final String TWAP_OBSERVATION_INDEX = "twapObservationIndex";
+    private static final String TWAP_OBSERVATION_COUNT = "twapObservationCount";
+    private static final String STABLE_POOL_AMPLIFICATION = "stable_pool_amplification";
 
 
     final static VarDB<Address> admin = Context.newVarDB(ADMIN, Address.class);
@@ -136,15 +154,64 @@ public class DexDBVariables {
     // Map: pool_id -> quote token address
     final static DictDB<Integer, Address> poolQuote = Context.newDictDB(QUOTE_TOKEN, Address.class);
     final static DictDB<Integer, Boolean> active = Context.newDictDB(ACTIVE_POOL, Boolean.class);
+    // Map: pool_id -> amplification coefficient of pools using the StableSwap curve instead of x * y = k
+    final static DictDB<Integer, BigInteger> stablePoolAmplification = Context.newDictDB(STABLE_POOL_AMPLIFICATION,
+            BigInteger.class);
+
+    // Map: token address -> ids of the pools containing the token
+    final static BranchDB<Address, ArrayDB<Integer>> tokenPools = Context.newBranchDB(TOKEN_POOLS, Integer.class);
+    // First pool id which is not yet in tokenPools
+    final static VarDB<Integer> tokenPoolsNonce = Context.newVarDB(TOKEN_POOLS_NONCE, Integer.class);
+
+    // Map: pool_id -> sum of base price in quote multiplied by the microseconds it was held, price scaled by EXA
+    final static DictDB<Integer, BigInteger> poolPriceCumulative = Context.newDictDB(POOL_PRICE_CUMULATIVE,
+            BigInteger.class);
+    // Map: pool_id -> block timestamp of the last poolPriceCumulative update
+    final static DictDB<Integer, BigInteger> poolPriceLastUpdate = Context.newDictDB(POOL_PRICE_LAST_UPDATE,
+            BigInteger.class);
+    // Ring buffers of poolPriceCumulative observations, at most one per TWAP_OBSERVATION_INTERVAL
+    // Map: pool_id -> slot -> timestamp/cumulative price
+    final static BranchDB<Integer, DictDB<Integer, BigInteger>> twapObservationTimestamps = Context.newBranchDB(
+            TWAP_OBSERVATION_TIMESTAMPS, BigInteger.class);
+    final static BranchDB<Integer, DictDB<Integer, BigInteger>> twapObservationCumulatives = Context.newBranchDB(
+            TWAP_OBSERVATION_CUMULATIVES, BigInteger.class);
+    // Map: pool_id -> slot of the latest observation
+    final static DictDB<Integer, Integer> twapObservationIndex = Context.newDictDB(TWAP_OBSERVATION_INDEX,
+            Integer.class);
+    // Map: pool_id -> number of filled slots
+    final static DictDB<Integer, Integer> twapObservationCount = Context.newDictDB(TWAP_OBSERVATION_COUNT,
+            Integer.class);
 
     final static LinkedListDB icxQueue = new LinkedListDB(ICX_QUEUE);
 
-    // Map: user_address -> order id
+    // Map: user_address -> order id, or the id of the bucket holding the order
     final static DictDB<Address, BigInteger> icxQueueOrderId = Context.newDictDB(ICX_QUEUE_ORDER_ID, BigInteger.class);
 
+    // Orders are aggregated into buckets, which are icxQueue nodes without an owner. Nodes of orders placed before
+    // buckets were introduced keep their owner until a swap reaches them and turns them into single order buckets.
+    // Highest id given to a node of icxQueue
+    final static VarDB<BigInteger> icxQueueLastId = Context.newVarDB(ICX_QUEUE_LAST_ID, BigInteger.class);
+    // Bucket new orders are added to, it is closed once it is full or the first swap fills it
+    final static VarDB<BigInteger> icxQueueOpenBucket = Context.newVarDB(ICX_QUEUE_OPEN_BUCKET, BigInteger.class);
+    // Map: bucket id -> sum of the deposits of the orders in the bucket
+    final static DictDB<BigInteger, BigInteger> icxBucketDeposits = Context.newDictDB(ICX_BUCKET_DEPOSITS,
+            BigInteger.class);
+    // Map: bucket id -> cumulative sICX earned per ICX deposited into the bucket, multiplied by EXA
+    final static DictDB<BigInteger, BigInteger> icxBucketEarningsPerIcx = Context.newDictDB(
+            ICX_BUCKET_EARNINGS_PER_ICX, BigInteger.class);
+    // Map: bucket id -> number of orders in the bucket
+    final static DictDB<BigInteger, Integer> icxBucketOrders = Context.newDictDB(ICX_BUCKET_ORDERS, Integer.class);
+    // Map: user_address -> ICX deposited into the bucket of the order
+    final static DictDB<Address, BigInteger> icxOrderDeposit = Context.newDictDB(ICX_ORDER_DEPOSIT, BigInteger.class);
+    // Map: user_address -> earnings per ICX of the bucket when the order was last settled
+    final static DictDB<Address, BigInteger> icxOrderEarningsIndex = Context.newDictDB(ICX_ORDER_EARNINGS_INDEX,
+            BigInteger.class);
+
     // Map: user_address -> integer of unclaimed earnings
     final static DictDB<Address, BigInteger> sicxEarnings = Context.newDictDB(SICX_EARNINGS, BigInteger.class);
     final static VarDB<BigInteger> icxQueueTotal = Context.newVarDB(ICX_QUEUE_TOTAL, BigInteger.class);
+    // Latest sICX rate pushed by staking, if the Dex is subscribed to rate updates
+    final static VarDB<BigInteger> cachedSicxRate = Context.newVarDB(CACHED_SICX_RATE, BigInteger.class);
 
 
     final static IterableDictDB<String, Integer> namedMarkets = new IterableDictDB<>(NAMED_MARKETS, Integer.class,
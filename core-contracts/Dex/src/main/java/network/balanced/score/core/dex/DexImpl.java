@@ -18,9 +18,11 @@ package network.balanced.score.core.dex;
 
 
 import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
-import network.balanced.score.core.dex.db.NodeDB;
+import com.eclipsesource.json.JsonValue;
 import network.balanced.score.lib.structs.RewardsDataEntry;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import score.Address;
 import score.BranchDB;
 import score.Context;
@@ -35,6 +37,7 @@ import java.util.List;
 
 import static network.balanced.score.core.dex.DexDBVariables.*;
 import static network.balanced.score.core.dex.utils.Check.isDexOn;
+import static network.balanced.score.lib.utils.Check.onlyEither;
 import static network.balanced.score.core.dex.utils.Const.*;
 import static network.balanced.score.lib.utils.Constants.EXA;
 import static network.balanced.score.lib.utils.Math.convertToNumber;
@@ -55,21 +58,18 @@ public class DexImpl extends AbstractDex {
                 TAG + ": Minimum pool contribution is 10 ICX");
 
         Address user = Context.getCaller();
+        closeFilledIcxOrder(user);
         BigInteger oldOrderValue = BigInteger.ZERO;
         BigInteger orderId = icxQueueOrderId.getOrDefault(user, BigInteger.ZERO);
 
         // Upsert Order, so we can bump to the back of the queue
         if (orderId.compareTo(BigInteger.ZERO) > 0) {
-            NodeDB node = icxQueue.getNode(orderId);
-            oldOrderValue = node.getSize();
+            oldOrderValue = removeIcxOrder(user);
             orderValue = orderValue.add(oldOrderValue);
-            icxQueue.remove(orderId);
         }
 
         // Insert order to the back of the queue
-        BigInteger nextTailId = icxQueue.getTailId().add(BigInteger.ONE);
-        icxQueue.append(orderValue, user, nextTailId);
-        icxQueueOrderId.set(user, nextTailId);
+        addIcxOrder(user, orderValue);
 
         // Update total ICX queue size
         BigInteger oldIcxTotal = icxQueueTotal.getOrDefault(BigInteger.ZERO);
@@ -90,18 +90,24 @@ public class DexImpl extends AbstractDex {
 
         require(orderId.compareTo(BigInteger.ZERO) > 0, TAG + ": No open order in sICX/ICX queue.");
 
-        NodeDB order = icxQueue.getNode(orderId);
-        BigInteger withdrawAmount = order.getSize();
+        BigInteger withdrawAmount = removeIcxOrder(user);
         BigInteger oldIcxTotal = icxQueueTotal.get();
         BigInteger currentIcxTotal = oldIcxTotal.subtract(withdrawAmount);
 
         icxQueueTotal.set(currentIcxTotal);
-        icxQueue.remove(orderId);
-        icxQueueOrderId.set(user, null);
         activeAddresses.get(SICXICX_POOL_ID).remove(user);
 
         sendRewardsData(user, withdrawAmount, oldIcxTotal);
-        Context.transfer(user, withdrawAmount);
+        if (withdrawAmount.signum() > 0) {
+            Context.transfer(user, withdrawAmount);
+        }
+    }
+
+    // Orders of a bucket are only reported to Rewards when they are next touched, anyone can report them sooner
+    @External
+    public void updateIcxBucketRewards(BigInteger _bucketId) {
+        isDexOn();
+        updateIcxBucketRewardsData(_bucketId);
     }
 
     private void sendRewardsData(Address user, BigInteger amount, BigInteger oldIcxTotal) {
@@ -119,6 +125,12 @@ public class DexImpl extends AbstractDex {
 
         isDexOn();
 
+        if (TokenFallbackData.isEncoded(_data)) {
+            require(_value.compareTo(BigInteger.ZERO) > 0, TAG + ": Invalid token transfer value");
+            encodedTokenFallback(_from, _value, TokenFallbackData.decode(_data));
+            return;
+        }
+
         // Parse the transaction data submitted by the user
         String unpackedData = new String(_data);
         require(!unpackedData.equals(""), "Token Fallback: Data can't be empty");
@@ -133,16 +145,7 @@ public class DexImpl extends AbstractDex {
         // Call an internal method based on the "method" param sent in tokenFallBack
         switch (method) {
             case "_deposit": {
-                DictDB<Address, BigInteger> depositDetails = deposit.at(fromToken);
-                BigInteger userBalance = depositDetails.getOrDefault(_from, BigInteger.ZERO);
-                userBalance = userBalance.add(_value);
-                depositDetails.set(_from, userBalance);
-                Deposit(fromToken, _from, _value);
-
-                if (tokenPrecisions.get(fromToken) == null) {
-                    BigInteger decimalValue = (BigInteger) Context.call(fromToken, "decimals");
-                    tokenPrecisions.set(fromToken, decimalValue);
-                }
+                depositToken(fromToken, _from, _value);
                 break;
 
             }
@@ -173,6 +176,19 @@ public class DexImpl extends AbstractDex {
                     receiver = _from;
                 }
 
+                // A path trades through several pools and only sends out the last token
+                if (params.contains("path")) {
+                    JsonArray pathArray = params.get("path").asArray();
+                    Address[] path = new Address[pathArray.size()];
+                    for (int i = 0; i < pathArray.size(); i++) {
+                        JsonValue token = pathArray.get(i);
+                        path[i] = token.isNull() ? null : Address.fromString(token.asString());
+                    }
+
+                    swapPath(fromToken, path, _from, receiver, _value, minimumReceive);
+                    break;
+                }
+
                 // Get destination coin from the swap
                 require(params.contains("toToken"), TAG + ": No toToken specified in swap");
                 Address toToken = Address.fromString(params.get("toToken").asString());
@@ -200,6 +216,54 @@ public class DexImpl extends AbstractDex {
         }
     }
 
+    private void encodedTokenFallback(Address from, BigInteger value, TokenFallbackData data) {
+        Address fromToken = Context.getCaller();
+        switch (data.method) {
+            case TokenFallbackData.DEPOSIT:
+                depositToken(fromToken, from, value);
+                break;
+            case TokenFallbackData.SWAP_ICX:
+                require(fromToken.equals(sicx.get()),
+                        TAG + ": InvalidAsset: _swap_icx can only be called with sICX");
+                swapIcx(from, value);
+                break;
+            case TokenFallbackData.SWAP: {
+                BigInteger minimumReceive = data.minimumReceive == null ? BigInteger.ZERO : data.minimumReceive;
+                require(minimumReceive.signum() >= 0, TAG + ": Must specify a positive number for minimum to receive");
+                Address receiver = data.receiver == null ? from : data.receiver;
+
+                if (data.path != null) {
+                    swapPath(fromToken, data.path, from, receiver, value, minimumReceive);
+                    break;
+                }
+
+                require(data.toToken != null, TAG + ": No toToken specified in swap");
+                exchange(fromToken, data.toToken, from, receiver, value, minimumReceive);
+                break;
+            }
+            case TokenFallbackData.DONATE:
+                require(from.equals(Context.getOwner()), "Only owner is allowed to donate");
+                donate(fromToken, data.toToken, value);
+                break;
+            default:
+                Context.revert(100, TAG + ": Unsupported method supplied");
+                break;
+        }
+    }
+
+    private void depositToken(Address token, Address user, BigInteger value) {
+        DictDB<Address, BigInteger> depositDetails = deposit.at(token);
+        BigInteger userBalance = depositDetails.getOrDefault(user, BigInteger.ZERO);
+        userBalance = userBalance.add(value);
+        depositDetails.set(user, userBalance);
+        Deposit(token, user, value);
+
+        if (tokenPrecisions.get(token) == null) {
+            BigInteger decimalValue = (BigInteger) Context.call(token, "decimals");
+            tokenPrecisions.set(token, decimalValue);
+        }
+    }
+
     @External
     public void transfer(Address _to, BigInteger _value, BigInteger _id, @Optional byte[] _data) {
         isDexOn();
@@ -268,6 +332,7 @@ public class DexImpl extends AbstractDex {
         require(newTotal.compareTo(MIN_LIQUIDITY) >= 0,
                 TAG + ": Cannot withdraw pool past minimum LP token amount");
 
+        updatePriceCumulative(_id.intValue());
         totalTokensInPool.set(baseToken, newBase);
         totalTokensInPool.set(quoteToken, newQuote);
         userLPBalance.set(user, newUserBalance);
@@ -294,6 +359,22 @@ public class DexImpl extends AbstractDex {
     @External
     public void add(Address _baseToken, Address _quoteToken, BigInteger _baseValue, BigInteger _quoteValue,
                     @Optional boolean _withdraw_unused) {
+        addLiquidity(_baseToken, _quoteToken, _baseValue, _quoteValue, null);
+    }
+
+    // Creates a pool of pegged assets on the StableSwap curve, supplied with the caller's deposits
+    @External
+    public void createStablePool(Address _baseToken, Address _quoteToken, BigInteger _baseValue,
+                                 BigInteger _quoteValue, BigInteger _amplification) {
+        onlyEither(governance, admin);
+        require(poolId.at(_baseToken).getOrDefault(_quoteToken, 0) == 0, TAG + ": Pool already exists");
+        require(_amplification.signum() > 0 && _amplification.compareTo(MAX_STABLE_POOL_AMPLIFICATION) <= 0,
+                TAG + ": Amplification must be between 1 and " + MAX_STABLE_POOL_AMPLIFICATION);
+        addLiquidity(_baseToken, _quoteToken, _baseValue, _quoteValue, _amplification);
+    }
+
+    private void addLiquidity(Address _baseToken, Address _quoteToken, BigInteger _baseValue, BigInteger _quoteValue,
+                              BigInteger amplification) {
         isDexOn();
 
         Address user = Context.getCaller();
@@ -348,6 +429,15 @@ public class DexImpl extends AbstractDex {
             active.set(id, true);
             poolBase.set(id, _baseToken);
             poolQuote.set(id, _quoteToken);
+            indexPools();
+
+            if (amplification != null) {
+                BigInteger baseDecimals = tokenPrecisions.get(_baseToken);
+                BigInteger quoteDecimals = tokenPrecisions.get(_quoteToken);
+                require(baseDecimals != null && baseDecimals.intValue() <= 18 && quoteDecimals != null &&
+                        quoteDecimals.intValue() <= 18, TAG + ": Stable pool tokens can have at most 18 decimals");
+                stablePoolAmplification.set(id, amplification);
+            }
 
             liquidity = (_baseValue.multiply(_quoteValue)).sqrt();
             require(liquidity.compareTo(MIN_LIQUIDITY) >= 0,
@@ -389,6 +479,7 @@ public class DexImpl extends AbstractDex {
         }
 
         // Apply the funds to the pool
+        updatePriceCumulative(id);
 
         poolBaseAmount = poolBaseAmount.add(baseToCommit);
         poolQuoteAmount = poolQuoteAmount.add(quoteToCommit);
@@ -430,6 +521,11 @@ public class DexImpl extends AbstractDex {
             _value = BigInteger.ZERO;
         }
         Address sender = Context.getCaller();
+        if (closeFilledIcxOrder(sender)) {
+            sendRewardsData(sender, BigInteger.ZERO, icxQueueTotal.getOrDefault(BigInteger.ZERO));
+        } else {
+            settleIcxOrderEarnings(sender);
+        }
         BigInteger sicxEarning = getSicxEarnings(sender);
         if (_value.equals(BigInteger.ZERO)) {
             _value = sicxEarning;
@@ -42,6 +42,10 @@ public class LinkedListDB {
         this.length = Context.newVarDB(this.name + "_length", BigInteger.class);
     }
 
+    public BigInteger getHeadId() {
+        return headId.getOrDefault(BigInteger.ZERO);
+    }
+
     public BigInteger getTailId() {
         return tailId.getOrDefault(BigInteger.ZERO);
     }
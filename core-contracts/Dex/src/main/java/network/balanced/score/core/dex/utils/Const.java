@@ -33,6 +33,14 @@ public class Const {
     public static final BigInteger FEE_SCALE = BigInteger.valueOf(10_000);
     public static final int FIRST_NON_BALANCED_POOL = 6;
     public static final Integer ICX_QUEUE_FILL_DEPTH = 50;
+    public static final int ICX_QUEUE_BUCKET_ORDERS = 100;
+    public static final int MAX_SWAP_PATH_LENGTH = 4;
+    public static final int MAX_POOLS_PAGE_SIZE = 50;
+    public static final int MAX_SWAP_QUOTE_BATCH_SIZE = 200;
+    public static final BigInteger MAX_STABLE_POOL_AMPLIFICATION = BigInteger.valueOf(10_000);
+    public static final int TWAP_OBSERVATIONS = 96;
+    public static final BigInteger TWAP_OBSERVATION_INTERVAL = MICRO_SECONDS_IN_A_DAY.divide(
+            BigInteger.valueOf(TWAP_OBSERVATIONS));
 
     public static final int USDS_BNUSD_ID = 10;
     public static final int IUSDT_BNUSD_ID = 15;
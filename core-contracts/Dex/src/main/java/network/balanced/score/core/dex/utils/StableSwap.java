@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.core.dex.utils;
+
+import score.Context;
+
+import java.math.BigInteger;
+
+import static network.balanced.score.core.dex.utils.Const.TAG;
+import static network.balanced.score.lib.utils.Constants.EXA;
+
+// Two token StableSwap invariant, A * 4 * (x + y) + D = A * 4 * D + D^3 / (4 * x * y), on balances scaled to 18
+// decimals.
+public class StableSwap {
+    private static final int MAX_ITERATIONS = 255;
+    private static final BigInteger FOUR = BigInteger.valueOf(4);
+
+    public static BigInteger getD(BigInteger x, BigInteger y, BigInteger amplification) {
+        BigInteger sum = x.add(y);
+        if (sum.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger ann = amplification.multiply(FOUR);
+        BigInteger d = sum;
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            BigInteger dP = d.multiply(d).divide(x.multiply(BigInteger.TWO)).multiply(d)
+                    .divide(y.multiply(BigInteger.TWO));
+            BigInteger previous = d;
+            BigInteger numerator = ann.multiply(sum).add(dP.multiply(BigInteger.TWO)).multiply(d);
+            BigInteger denominator = ann.subtract(BigInteger.ONE).multiply(d).add(dP.multiply(BigInteger.valueOf(3)));
+            d = numerator.divide(denominator);
+            if (d.subtract(previous).abs().compareTo(BigInteger.ONE) <= 0) {
+                return d;
+            }
+        }
+
+        Context.revert(TAG + ": StableSwap invariant did not converge");
+        return null;
+    }
+
+    // Balance of one token which keeps the invariant d given the balance x of the other token
+    public static BigInteger getY(BigInteger x, BigInteger d, BigInteger amplification) {
+        BigInteger ann = amplification.multiply(FOUR);
+        BigInteger c = d.multiply(d).divide(x.multiply(BigInteger.TWO)).multiply(d)
+                .divide(ann.multiply(BigInteger.TWO));
+        BigInteger b = x.add(d.divide(ann));
+        BigInteger y = d;
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            BigInteger previous = y;
+            y = y.multiply(y).add(c).divide(y.multiply(BigInteger.TWO).add(b).subtract(d));
+            if (y.subtract(previous).abs().compareTo(BigInteger.ONE) <= 0) {
+                return y;
+            }
+        }
+
+        Context.revert(TAG + ": StableSwap balance did not converge");
+        return null;
+    }
+
+    // Amount of toToken removed from the pool for an input of value fromToken, fees already deducted
+    public static BigInteger getAmountOut(BigInteger value, BigInteger fromTotal, BigInteger toTotal,
+                                          BigInteger fromScale, BigInteger toScale, BigInteger amplification) {
+        if (fromTotal.signum() == 0 || toTotal.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger x = fromTotal.multiply(fromScale);
+        BigInteger y = toTotal.multiply(toScale);
+        BigInteger d = getD(x, y, amplification);
+        BigInteger newY = getY(x.add(value.multiply(fromScale)), d, amplification);
+
+        // Round against the trader
+        BigInteger amountOut = y.subtract(newY).subtract(BigInteger.ONE);
+        if (amountOut.signum() <= 0) {
+            return BigInteger.ZERO;
+        }
+
+        return amountOut.divide(toScale);
+    }
+
+    // Estimate of the input, before fees, needed to remove amountOut of toToken from the pool
+    public static BigInteger getAmountIn(BigInteger amountOut, BigInteger fromTotal, BigInteger toTotal,
+                                         BigInteger fromScale, BigInteger toScale, BigInteger amplification) {
+        BigInteger x = fromTotal.multiply(fromScale);
+        BigInteger y = toTotal.multiply(toScale);
+        BigInteger d = getD(x, y, amplification);
+        BigInteger newX = getY(y.subtract(amountOut.add(BigInteger.ONE).multiply(toScale)), d, amplification);
+
+        return newX.subtract(x).divide(fromScale).add(BigInteger.ONE);
+    }
+
+    // Marginal price of the x token in the y token, scaled by EXA
+    public static BigInteger getPrice(BigInteger xTotal, BigInteger yTotal, BigInteger xScale, BigInteger yScale,
+                                      BigInteger amplification) {
+        BigInteger x = xTotal.multiply(xScale);
+        BigInteger y = yTotal.multiply(yScale);
+        if (x.signum() == 0 || y.signum() == 0) {
+            return BigInteger.ZERO;
+        }
+
+        BigInteger d = getD(x, y, amplification);
+        BigInteger dCubed = d.multiply(d).multiply(d);
+        BigInteger term = amplification.multiply(FOUR).multiply(FOUR).multiply(x).multiply(x).multiply(y).multiply(y);
+        BigInteger numerator = term.add(dCubed.multiply(y));
+        BigInteger denominator = term.add(dCubed.multiply(x));
+
+        return numerator.multiply(EXA).multiply(xScale).divide(denominator.multiply(yScale));
+    }
+}
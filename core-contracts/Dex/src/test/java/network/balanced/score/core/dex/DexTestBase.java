@@ -129,6 +129,8 @@ class DexTestBase extends UnitTest {
         contextMock.when(() -> Context.call(eq(dividendsScore.getAddress()), eq("distribute"))).thenReturn(true);
         contextMock.when(() -> Context.call(eq(rewardsScore.getAddress()), eq("updateBatchRewardsData"),
                 any(String.class), any(BigInteger.class), any())).thenReturn(null);
+        contextMock.when(() -> Context.call(eq(rewardsScore.getAddress()), eq("updateBalanceAndSupplyBatch"),
+                any(String.class), any(BigInteger.class), any())).thenReturn(null);
         supplier.addBalance("ICX", value);
         sm.transfer(supplier, dexScore.getAddress(), value);
     }
@@ -16,28 +16,35 @@
 
 package network.balanced.score.core.dex;
 
+import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.iconloop.score.test.Account;
 import network.balanced.score.core.dex.utils.Const;
 import network.balanced.score.lib.structs.PrepDelegations;
+import network.balanced.score.lib.structs.RewardsDataEntry;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import org.mockito.stubbing.Answer;
 import score.Address;
 import score.Context;
 
 import java.math.BigInteger;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static network.balanced.score.core.dex.utils.Const.FEE_SCALE;
 import static network.balanced.score.core.dex.utils.Const.SICXICX_POOL_ID;
 import static network.balanced.score.lib.utils.Constants.EXA;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 
 
 public class DexTestCore extends DexTestBase {
@@ -458,6 +465,389 @@ public class DexTestCore extends DexTestBase {
         contextMock.verify(() -> Context.call(eq(bnusdScore.getAddress()), eq("transfer"), eq(feehandlerScore.getAddress()), eq(swappedBalnFee)));
     }
 
+    @SuppressWarnings("unchecked")
+    @SuppressWarnings("unchecked")
+    @Test
+    void getSwapOutputAndInput() {
+        Account account = sm.createAccount();
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        BigInteger value = BigInteger.TEN.multiply(EXA);
+        Address baln = balnScore.getAddress();
+        Address bnusd = bnusdScore.getAddress();
+
+        BigInteger output = (BigInteger) dexScore.call("getSwapOutput", baln, bnusd, value);
+        BigInteger[] amounts = new BigInteger[]{EXA, value};
+        List<BigInteger> outputs = (List<BigInteger>) dexScore.call("getSwapOutputBatch", baln, bnusd, amounts);
+        assertEquals(output, outputs.get(1));
+        assertTrue(outputs.get(0).compareTo(output) < 0);
+
+        BigInteger input = (BigInteger) dexScore.call("getSwapInput", baln, bnusd, output);
+        assertTrue(input.compareTo(value) <= 0);
+        assertEquals(output, dexScore.call("getSwapOutput", baln, bnusd, input));
+        List<BigInteger> inputs = (List<BigInteger>) dexScore.call("getSwapInputBatch", baln, bnusd,
+                new BigInteger[]{output});
+        assertEquals(input, inputs.get(0));
+        expectErrorMessage(() -> dexScore.call("getSwapInput", baln, bnusd, FIFTY),
+                "Insufficient liquidity for output amount");
+
+        JsonObject params = new JsonObject();
+        params.add("toToken", bnusd.toString());
+        params.add("minimumReceive", output.toString());
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap");
+        jsonData.add("params", params);
+        dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), value, jsonData.toString().getBytes());
+        contextMock.verify(() -> Context.call(bnusd, "transfer", account.getAddress(), output));
+    }
+
+    @Test
+    void tokenFallbackEncodedData() {
+        Account account = sm.createAccount();
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+
+        dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), BigInteger.TEN,
+                TokenFallbackData.encodeDeposit());
+        assertEquals(BigInteger.TEN, dexScore.call("getDeposit", balnScore.getAddress(), account.getAddress()));
+
+        BigInteger value = BigInteger.TEN.multiply(EXA);
+        BigInteger output = (BigInteger) dexScore.call("getSwapOutput", balnScore.getAddress(),
+                bnusdScore.getAddress(), value);
+        Executable belowMinimum = () -> dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), value,
+                TokenFallbackData.encodeSwap(bnusdScore.getAddress(), null, output.add(BigInteger.ONE), null));
+        expectErrorMessage(belowMinimum, "MinimumReceiveError");
+
+        Account receiver = sm.createAccount();
+        dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), value,
+                TokenFallbackData.encodeSwap(bnusdScore.getAddress(), null, output, receiver.getAddress()));
+        contextMock.verify(() -> Context.call(bnusdScore.getAddress(), "transfer", receiver.getAddress(), output));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void stableSwapPool() {
+        Account account = sm.createAccount();
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+
+        BigInteger thousand = BigInteger.valueOf(1000).multiply(EXA);
+        Address baln = balnScore.getAddress();
+        Address bnusd = bnusdScore.getAddress();
+        depositToken(governanceScore, balnScore, thousand);
+        depositToken(governanceScore, bnusdScore, thousand);
+        dexScore.invoke(governanceScore, "addQuoteCoin", bnusd);
+
+        Executable notAuthorized = () -> dexScore.invoke(account, "createStablePool", baln, bnusd, thousand,
+                thousand, BigInteger.valueOf(100));
+        expectErrorMessage(notAuthorized, "Authorization Check");
+        dexScore.invoke(governanceScore, "createStablePool", baln, bnusd, thousand, thousand, BigInteger.valueOf(100));
+
+        BigInteger poolId = (BigInteger) dexScore.call("getPoolId", baln, bnusd);
+        assertEquals(BigInteger.valueOf(100), dexScore.call("getPoolAmplification", poolId));
+        assertEquals(EXA, dexScore.call("getBasePriceInQuote", poolId));
+
+        Map<String, BigInteger> fees = (Map<String, BigInteger>) dexScore.call("getFees");
+        BigInteger value = BigInteger.valueOf(100).multiply(EXA);
+        BigInteger totalFees = value.multiply(fees.get("pool_lp_fee")).divide(FEE_SCALE)
+                .add(value.multiply(fees.get("pool_baln_fee")).divide(FEE_SCALE));
+        BigInteger constantProductOutput = thousand.subtract(thousand.multiply(thousand)
+                .divide(thousand.add(value.subtract(totalFees))));
+        BigInteger output = (BigInteger) dexScore.call("getSwapOutput", baln, bnusd, value);
+        assertTrue(output.compareTo(constantProductOutput) > 0);
+        assertTrue(output.compareTo(value.subtract(totalFees)) < 0);
+
+        JsonObject params = new JsonObject();
+        params.add("toToken", bnusd.toString());
+        params.add("minimumReceive", output.toString());
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap");
+        jsonData.add("params", params);
+        dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), value, jsonData.toString().getBytes());
+        contextMock.verify(() -> Context.call(bnusd, "transfer", account.getAddress(), output));
+
+        BigInteger price = (BigInteger) dexScore.call("getBasePriceInQuote", poolId);
+        assertTrue(price.compareTo(EXA) < 0);
+        assertEquals(EXA.multiply(EXA).divide(price), dexScore.call("getQuotePriceInBase", poolId));
+
+        BigInteger lpBalance = (BigInteger) dexScore.call("balanceOf", governanceScore.getAddress(), poolId);
+        dexScore.invoke(governanceScore, "remove", poolId, lpBalance.divide(BigInteger.TWO), false);
+        assertEquals(lpBalance.subtract(lpBalance.divide(BigInteger.TWO)),
+                dexScore.call("balanceOf", governanceScore.getAddress(), poolId));
+    }
+
+    @Test
+    void tokenFallbackSwapPath() {
+        Account account = sm.createAccount();
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        supplyLiquidity(ownerAccount, sicxScore, bnusdScore, FIFTY, FIFTY, false);
+        BigInteger balnPoolId = (BigInteger) dexScore.call("getPoolId", balnScore.getAddress(),
+                bnusdScore.getAddress());
+        BigInteger sicxPoolId = (BigInteger) dexScore.call("getPoolId", sicxScore.getAddress(),
+                bnusdScore.getAddress());
+
+        Map<String, BigInteger> fees = (Map<String, BigInteger>) dexScore.call("getFees");
+        BigInteger lpFee = fees.get("pool_lp_fee");
+        BigInteger balnFee = fees.get("pool_baln_fee");
+        BigInteger value = BigInteger.TEN.multiply(EXA);
+
+        // baln -> bnusd, baln is the base token so the baln fee is swapped to bnusd
+        Map<String, Object> balnPoolStats = (Map<String, Object>) dexScore.call("getPoolStats", balnPoolId);
+        BigInteger oldBaln = (BigInteger) balnPoolStats.get("base");
+        BigInteger oldBnusd = (BigInteger) balnPoolStats.get("quote");
+        BigInteger hopLpFee = value.multiply(lpFee).divide(FEE_SCALE);
+        BigInteger hopBalnFee = value.multiply(balnFee).divide(FEE_SCALE);
+        BigInteger newBaln = oldBaln.add(value.subtract(hopLpFee).subtract(hopBalnFee));
+        BigInteger newBnusd = oldBaln.multiply(oldBnusd).divide(newBaln);
+        BigInteger bnusdAmount = oldBnusd.subtract(newBnusd);
+        newBaln = newBaln.add(hopLpFee);
+        BigInteger bnusdAfterFeeSwap = newBaln.multiply(newBnusd).divide(newBaln.add(hopBalnFee));
+        BigInteger bnusdFees = newBnusd.subtract(bnusdAfterFeeSwap);
+
+        // bnusd -> sicx, bnusd is the quote token so the baln fee stays in bnusd
+        Map<String, Object> sicxPoolStats = (Map<String, Object>) dexScore.call("getPoolStats", sicxPoolId);
+        BigInteger oldSicx = (BigInteger) sicxPoolStats.get("base");
+        BigInteger oldSicxPoolBnusd = (BigInteger) sicxPoolStats.get("quote");
+        hopLpFee = bnusdAmount.multiply(lpFee).divide(FEE_SCALE);
+        hopBalnFee = bnusdAmount.multiply(balnFee).divide(FEE_SCALE);
+        BigInteger newSicxPoolBnusd = oldSicxPoolBnusd.add(bnusdAmount.subtract(hopLpFee).subtract(hopBalnFee));
+        BigInteger newSicx = oldSicxPoolBnusd.multiply(oldSicx).divide(newSicxPoolBnusd);
+        BigInteger sicxAmount = oldSicx.subtract(newSicx);
+        bnusdFees = bnusdFees.add(hopBalnFee);
+
+        JsonObject params = new JsonObject();
+        params.add("path", new JsonArray().add(bnusdScore.getAddress().toString()).add(sicxScore.getAddress().toString()));
+        params.add("minimumReceive", sicxAmount.add(BigInteger.ONE).toString());
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap");
+        jsonData.add("params", params);
+        Executable belowMinimum = () -> dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), value,
+                jsonData.toString().getBytes());
+        expectErrorMessage(belowMinimum, "MinimumReceiveError");
+
+        params.set("minimumReceive", sicxAmount.toString());
+        dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), value, jsonData.toString().getBytes());
+
+        sicxPoolStats = (Map<String, Object>) dexScore.call("getPoolStats", sicxPoolId);
+        assertEquals(newSicx, sicxPoolStats.get("base"));
+        assertEquals(newSicxPoolBnusd.add(hopLpFee), sicxPoolStats.get("quote"));
+
+        contextMock.verify(() -> Context.call(sicxScore.getAddress(), "transfer", account.getAddress(), sicxAmount));
+        contextMock.verify(() -> Context.call(eq(bnusdScore.getAddress()), eq("transfer"), eq(account.getAddress()),
+                any(BigInteger.class)), never());
+        contextMock.verify(() -> Context.call(bnusdScore.getAddress(), "transfer", feehandlerScore.getAddress(),
+                bnusdFees));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void quoteBestRoute() {
+        Account account = sm.createAccount();
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        supplyLiquidity(ownerAccount, sicxScore, bnusdScore, FIFTY, FIFTY, false);
+        BigInteger value = BigInteger.TEN.multiply(EXA);
+
+        Map<String, Object> quote = (Map<String, Object>) dexScore.call("quoteBestRoute", sicxScore.getAddress(),
+                balnScore.getAddress(), value, 0);
+        assertEquals(List.of(bnusdScore.getAddress(), balnScore.getAddress()), quote.get("path"));
+        BigInteger quotedAmount = (BigInteger) quote.get("amount");
+
+        quote = (Map<String, Object>) dexScore.call("quoteBestRoute", sicxScore.getAddress(),
+                balnScore.getAddress(), value, 1);
+        assertEquals(List.of(), quote.get("path"));
+        assertEquals(BigInteger.ZERO, quote.get("amount"));
+
+        JsonObject params = new JsonObject();
+        params.add("path", new JsonArray().add(bnusdScore.getAddress().toString()).add(balnScore.getAddress().toString()));
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap");
+        jsonData.add("params", params);
+        dexScore.invoke(sicxScore, "tokenFallback", account.getAddress(), value, jsonData.toString().getBytes());
+
+        contextMock.verify(() -> Context.call(balnScore.getAddress(), "transfer", account.getAddress(), quotedAmount));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getPoolsForTokenAndAllPools() {
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        supplyLiquidity(ownerAccount, sicxScore, bnusdScore, FIFTY, FIFTY, false);
+        BigInteger balnPoolId = (BigInteger) dexScore.call("getPoolId", balnScore.getAddress(),
+                bnusdScore.getAddress());
+        BigInteger sicxPoolId = (BigInteger) dexScore.call("getPoolId", sicxScore.getAddress(),
+                bnusdScore.getAddress());
+
+        List<Map<String, Object>> bnusdPools = (List<Map<String, Object>>) dexScore.call("getPoolsForToken",
+                bnusdScore.getAddress(), 0, 0);
+        assertEquals(2, bnusdPools.size());
+        assertEquals(balnPoolId, bnusdPools.get(0).get("id"));
+        assertEquals(sicxPoolId, bnusdPools.get(1).get("id"));
+
+        bnusdPools = (List<Map<String, Object>>) dexScore.call("getPoolsForToken", bnusdScore.getAddress(), 1, 1);
+        assertEquals(1, bnusdPools.size());
+        assertEquals(sicxScore.getAddress(), bnusdPools.get(0).get("base_token"));
+        assertEquals(bnusdScore.getAddress(), bnusdPools.get(0).get("quote_token"));
+
+        List<Map<String, Object>> balnPools = (List<Map<String, Object>>) dexScore.call("getPoolsForToken",
+                balnScore.getAddress(), 0, 0);
+        assertEquals(1, balnPools.size());
+
+        List<Map<String, Object>> pools = (List<Map<String, Object>>) dexScore.call("getAllPools", 1, 0);
+        assertEquals(2, pools.size());
+        assertEquals(balnPoolId, pools.get(0).get("id"));
+        assertEquals(FIFTY, pools.get(0).get("base"));
+        assertEquals(sicxPoolId, pools.get(1).get("id"));
+        assertEquals(sicxScore.getAddress(), pools.get(1).get("base_token"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getPoolStatsBatch() {
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        BigInteger sicxRate = EXA.multiply(BigInteger.TWO);
+        contextMock.when(() -> Context.call(stakingScore.getAddress(), "getTodayRate")).thenReturn(sicxRate);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        supplyLiquidity(ownerAccount, bnusdScore, sicxScore, FIFTY, FIFTY, false);
+        BigInteger balnPoolId = (BigInteger) dexScore.call("getPoolId", balnScore.getAddress(),
+                bnusdScore.getAddress());
+        BigInteger sicxPoolId = (BigInteger) dexScore.call("getPoolId", bnusdScore.getAddress(),
+                sicxScore.getAddress());
+        BigInteger[] ids = new BigInteger[]{BigInteger.valueOf(SICXICX_POOL_ID), balnPoolId, sicxPoolId};
+
+        contextMock.clearInvocations();
+        List<Map<String, Object>> pools = (List<Map<String, Object>>) dexScore.call("getPoolStatsBatch",
+                (Object) ids);
+        contextMock.verify(() -> Context.call(stakingScore.getAddress(), "getTodayRate"));
+
+        assertEquals(3, pools.size());
+        for (int i = 0; i < ids.length; i++) {
+            Map<String, Object> poolStats = new HashMap<>(pools.get(i));
+            assertEquals(ids[i], poolStats.remove("id"));
+            assertEquals(dexScore.call("getPoolStats", ids[i]), poolStats);
+        }
+
+        List<List<BigInteger>> compactPools = (List<List<BigInteger>>) dexScore.call("getPoolStatsBatchCompact",
+                (Object) ids);
+        assertEquals(List.of(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO, sicxRate), compactPools.get(0));
+        assertEquals(List.of(FIFTY, FIFTY.divide(BigInteger.TWO), pools.get(1).get("total_supply"),
+                pools.get(1).get("price")), compactPools.get(1));
+        assertEquals(pools.get(2).get("price"), compactPools.get(2).get(3));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getBalanceAndSupplyBatch_stakedLp() {
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        BigInteger poolId = (BigInteger) dexScore.call("getPoolId", balnScore.getAddress(), bnusdScore.getAddress());
+        String poolName = "BALN/bnUSD";
+        dexScore.invoke(governanceScore, "setMarketName", poolId, poolName);
+
+        Address[] owners = new Address[]{sm.createAccount().getAddress(), sm.createAccount().getAddress()};
+        Map<String, Object> stakedData = Map.of(
+                "_balances", List.of(BigInteger.ONE, BigInteger.TWO),
+                "_totalSupply", BigInteger.TEN
+        );
+        contextMock.when(() -> Context.call(stakedLPScore.getAddress(), "getBalanceAndSupplyBatch", poolName,
+                owners)).thenReturn(stakedData);
+
+        Map<String, Object> rewardsData = (Map<String, Object>) dexScore.call("getBalanceAndSupplyBatch", poolName,
+                owners);
+
+        assertEquals(stakedData, rewardsData);
+        contextMock.verify(() -> Context.call(stakedLPScore.getAddress(), "getBalanceAndSupplyBatch", poolName,
+                owners));
+        contextMock.verify(() -> Context.call(eq(stakedLPScore.getAddress()), eq("balanceOf"), any(Address.class),
+                any(BigInteger.class)), never());
+        expectErrorMessage(() -> dexScore.call("getBalanceAndSupplyBatch", "unknown", owners),
+                "Unsupported data source name");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void updateSicxRate() {
+        BigInteger poolId = BigInteger.valueOf(SICXICX_POOL_ID);
+        BigInteger stakingRate = EXA.multiply(BigInteger.TWO);
+        BigInteger pushedRate = EXA.multiply(BigInteger.valueOf(3));
+        contextMock.when(() -> Context.call(stakingScore.getAddress(), "getTodayRate")).thenReturn(stakingRate);
+
+        Account nonStaking = sm.createAccount();
+        Executable nonStakingUpdate = () -> dexScore.invoke(nonStaking, "updateSicxRate", pushedRate);
+        expectErrorMessage(nonStakingUpdate, "Authorization Check: Authorization failed.");
+
+        dexScore.invoke(stakingScore, "updateSicxRate", pushedRate);
+        contextMock.clearInvocations();
+        Map<String, Object> poolStats = (Map<String, Object>) dexScore.call("getPoolStats", poolId);
+        assertEquals(pushedRate, poolStats.get("price"));
+        contextMock.verify(() -> Context.call(stakingScore.getAddress(), "getTodayRate"), never());
+
+        // a new staking contract has not pushed a rate yet
+        dexScore.invoke(governanceScore, "setStaking", stakingScore.getAddress());
+        poolStats = (Map<String, Object>) dexScore.call("getPoolStats", poolId);
+        assertEquals(stakingRate, poolStats.get("price"));
+
+        // unsubscribing sends a zero rate, which drops the cached rate
+        dexScore.invoke(stakingScore, "updateSicxRate", pushedRate);
+        dexScore.invoke(stakingScore, "updateSicxRate", BigInteger.ZERO);
+        poolStats = (Map<String, Object>) dexScore.call("getPoolStats", poolId);
+        assertEquals(stakingRate, poolStats.get("price"));
+        Executable negativeRate = () -> dexScore.invoke(stakingScore, "updateSicxRate", BigInteger.ONE.negate());
+        expectErrorMessage(negativeRate, "Invalid sICX rate");
+    }
+
+    @Test
+    void getTWAP() {
+        Account account = sm.createAccount();
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+
+        BigInteger FIFTY = BigInteger.valueOf(50L).multiply(EXA);
+        supplyLiquidity(ownerAccount, balnScore, bnusdScore, FIFTY, FIFTY.divide(BigInteger.TWO), false);
+        BigInteger poolId = (BigInteger) dexScore.call("getPoolId", balnScore.getAddress(), bnusdScore.getAddress());
+        BigInteger blockTime = BigInteger.valueOf(2_000_000L);
+        BigInteger initialPrice = (BigInteger) dexScore.call("getBasePriceInQuote", poolId);
+
+        sm.getBlock().increase(1000);
+        BigInteger history = blockTime.multiply(BigInteger.valueOf(1000));
+        expectErrorMessage(() -> dexScore.call("getTWAP", poolId, history.multiply(BigInteger.TWO)),
+                "Window exceeds the price history");
+        expectErrorMessage(() -> dexScore.call("getTWAP", BigInteger.valueOf(SICXICX_POOL_ID), history),
+                "TWAP is not supported");
+        assertEquals(initialPrice, dexScore.call("getTWAP", poolId, history.divide(BigInteger.TWO)));
+
+        JsonObject params = new JsonObject();
+        params.add("toToken", bnusdScore.getAddress().toString());
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap");
+        jsonData.add("params", params);
+        dexScore.invoke(balnScore, "tokenFallback", account.getAddress(), BigInteger.TEN.multiply(EXA),
+                jsonData.toString().getBytes());
+        BigInteger swapPrice = (BigInteger) dexScore.call("getBasePriceInQuote", poolId);
+        assertTrue(swapPrice.compareTo(initialPrice) < 0);
+
+        sm.getBlock().increase(1000);
+        assertEquals(swapPrice, dexScore.call("getTWAP", poolId, history.divide(BigInteger.TWO)));
+
+        BigInteger twap = (BigInteger) dexScore.call("getTWAP", poolId, history.add(history.divide(BigInteger.TWO)));
+        assertTrue(twap.compareTo(swapPrice) > 0);
+        assertTrue(twap.compareTo(initialPrice) < 0);
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     void tokenFallback_donate() {
@@ -552,6 +942,143 @@ public class DexTestCore extends DexTestBase {
 
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void swapIcx_FillsBucketProRata() {
+        turnDexOn();
+        contextMock.when(() -> Context.call(eq(stakingScore.getAddress()), eq("getTodayRate"))).thenReturn(EXA);
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+        contextMock.when(() -> Context.transfer(any(Address.class), any(BigInteger.class))).then(invocationOnMock -> null);
+
+        // More orders than ICX_QUEUE_FILL_DEPTH, all in a single bucket
+        int suppliersCount = 80;
+        BigInteger orderValue = BigInteger.TEN.multiply(EXA);
+        Account[] suppliers = new Account[suppliersCount];
+        for (int i = 0; i < suppliersCount; i++) {
+            suppliers[i] = sm.createAccount();
+            supplyIcxLiquidity(suppliers[i], orderValue);
+        }
+        BigInteger icxTotal = orderValue.multiply(BigInteger.valueOf(suppliersCount));
+
+        Account swapper = sm.createAccount();
+        BigInteger swapValue = BigInteger.valueOf(700L).multiply(EXA);
+        Map<String, BigInteger> fees = (Map<String, BigInteger>) dexScore.call("getFees");
+        BigInteger balnFees = swapValue.multiply(fees.get("icx_baln_fee")).divide(FEE_SCALE);
+        BigInteger conversionFees = swapValue.multiply(fees.get("icx_conversion_fee")).divide(FEE_SCALE);
+        BigInteger orderIcxValue = swapValue.subtract(balnFees).subtract(conversionFees);
+        BigInteger lpSicxEarnings = orderIcxValue.add(conversionFees);
+
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap_icx");
+        contextMock.clearInvocations();
+        dexScore.invoke(sicxScore, "tokenFallback", swapper.getAddress(), swapValue, jsonData.toString().getBytes());
+        contextMock.verify(() -> Context.transfer(swapper.getAddress(), orderIcxValue));
+        contextMock.verify(() -> Context.call(eq(rewardsScore.getAddress()), eq("updateBalanceAndSupplyBatch"),
+                any(String.class), any(BigInteger.class), any()), never());
+
+        // The swap leaves the orders of the bucket to be reported to Rewards separately
+        dexScore.invoke(sm.createAccount(), "updateIcxBucketRewards", BigInteger.ONE);
+        BigInteger expectedBalance = icxTotal.subtract(orderIcxValue).multiply(orderValue).divide(icxTotal);
+        ArgumentCaptor<List<RewardsDataEntry>> rewardsData = ArgumentCaptor.forClass(List.class);
+        contextMock.verify(() -> Context.call(eq(rewardsScore.getAddress()), eq("updateBalanceAndSupplyBatch"),
+                eq("sICX/ICX"), eq(icxTotal.subtract(orderIcxValue)), rewardsData.capture()));
+        List<RewardsDataEntry> entries = rewardsData.getValue();
+        assertEquals(suppliersCount, entries.size());
+        for (RewardsDataEntry entry : entries) {
+            assertEquals(expectedBalance, entry._balance);
+            assertEquals(expectedBalance, dexScore.call("getICXBalance", entry._user));
+        }
+
+        BigInteger earningsPerIcx = lpSicxEarnings.multiply(EXA).divide(icxTotal);
+        BigInteger expectedEarnings = earningsPerIcx.multiply(orderValue).divide(EXA);
+        for (Account supplier : suppliers) {
+            assertEquals(expectedBalance, dexScore.call("getICXBalance", supplier.getAddress()));
+            assertEquals(expectedEarnings, dexScore.call("getSicxEarnings", supplier.getAddress()));
+        }
+        assertEquals(icxTotal.subtract(orderIcxValue), dexScore.call("totalSupply",
+                BigInteger.valueOf(SICXICX_POOL_ID)));
+
+        Account supplier = suppliers[0];
+        dexScore.invoke(supplier, "cancelSicxicxOrder");
+        contextMock.verify(() -> Context.transfer(supplier.getAddress(), expectedBalance));
+        assertEquals(BigInteger.ZERO, dexScore.call("getICXBalance", supplier.getAddress()));
+        assertEquals(expectedEarnings, dexScore.call("getSicxEarnings", supplier.getAddress()));
+        assertEquals(expectedBalance, dexScore.call("getICXBalance", suppliers[1].getAddress()));
+        assertEquals(expectedEarnings, dexScore.call("getSicxEarnings", suppliers[1].getAddress()));
+
+        dexScore.invoke(suppliers[1], "withdrawSicxEarnings", expectedEarnings);
+        contextMock.verify(() -> Context.call(sicxScore.getAddress(), "transfer", suppliers[1].getAddress(),
+                expectedEarnings));
+        assertEquals(BigInteger.ZERO, dexScore.call("getSicxEarnings", suppliers[1].getAddress()));
+        assertEquals(expectedBalance, dexScore.call("getICXBalance", suppliers[1].getAddress()));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void swapIcx_ClosesOrdersOfFilledBucket() {
+        turnDexOn();
+        contextMock.when(() -> Context.call(eq(stakingScore.getAddress()), eq("getTodayRate"))).thenReturn(EXA);
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+        contextMock.when(() -> Context.transfer(any(Address.class), any(BigInteger.class))).then(invocationOnMock -> null);
+
+        Account swapper = sm.createAccount();
+        BigInteger swapValue = BigInteger.valueOf(100L).multiply(EXA);
+        Map<String, BigInteger> fees = (Map<String, BigInteger>) dexScore.call("getFees");
+        BigInteger balnFees = swapValue.multiply(fees.get("icx_baln_fee")).divide(FEE_SCALE);
+        BigInteger conversionFees = swapValue.multiply(fees.get("icx_conversion_fee")).divide(FEE_SCALE);
+        BigInteger orderIcxValue = swapValue.subtract(balnFees).subtract(conversionFees);
+
+        // Three orders in one bucket which the swap fills exactly
+        Account[] suppliers = new Account[]{sm.createAccount(), sm.createAccount(), sm.createAccount()};
+        BigInteger orderValue = BigInteger.valueOf(33L).multiply(EXA);
+        supplyIcxLiquidity(suppliers[0], orderValue);
+        supplyIcxLiquidity(suppliers[1], orderValue);
+        supplyIcxLiquidity(suppliers[2], orderIcxValue.subtract(orderValue.multiply(BigInteger.TWO)));
+        BigInteger poolId = BigInteger.valueOf(SICXICX_POOL_ID);
+        assertEquals(BigInteger.valueOf(3), dexScore.call("totalDexAddresses", poolId));
+
+        JsonObject jsonData = new JsonObject();
+        jsonData.add("method", "_swap_icx");
+        dexScore.invoke(sicxScore, "tokenFallback", swapper.getAddress(), swapValue, jsonData.toString().getBytes());
+        assertEquals(BigInteger.ZERO, dexScore.call("totalSupply", poolId));
+        BigInteger expectedEarnings = (BigInteger) dexScore.call("getSicxEarnings", suppliers[0].getAddress());
+
+        // A new order of a member goes to a new bucket
+        BigInteger newOrderValue = BigInteger.TEN.multiply(EXA);
+        supplyIcxLiquidity(suppliers[0], newOrderValue);
+        assertEquals(newOrderValue, dexScore.call("getICXBalance", suppliers[0].getAddress()));
+        assertEquals(newOrderValue, dexScore.call("totalSupply", poolId));
+        assertEquals(expectedEarnings, dexScore.call("getSicxEarnings", suppliers[0].getAddress()));
+
+        // Cancelling the filled order closes it without sending any ICX
+        contextMock.clearInvocations();
+        dexScore.invoke(suppliers[1], "cancelSicxicxOrder");
+        contextMock.verify(() -> Context.transfer(eq(suppliers[1].getAddress()), any(BigInteger.class)), never());
+        assertEquals(BigInteger.ZERO, dexScore.call("getICXBalance", suppliers[1].getAddress()));
+        assertEquals(expectedEarnings, dexScore.call("getSicxEarnings", suppliers[1].getAddress()));
+        Executable cancelAgain = () -> dexScore.invoke(suppliers[1], "cancelSicxicxOrder");
+        expectErrorMessage(cancelAgain, "No open order in sICX/ICX queue.");
+
+        // The order of the member which did not touch it is closed when the bucket is reported
+        dexScore.invoke(sm.createAccount(), "updateIcxBucketRewards", BigInteger.ONE);
+        ArgumentCaptor<List<RewardsDataEntry>> rewardsData = ArgumentCaptor.forClass(List.class);
+        contextMock.verify(() -> Context.call(eq(rewardsScore.getAddress()), eq("updateBalanceAndSupplyBatch"),
+                eq("sICX/ICX"), eq(newOrderValue), rewardsData.capture()));
+        List<RewardsDataEntry> entries = rewardsData.getValue();
+        assertEquals(1, entries.size());
+        assertEquals(suppliers[2].getAddress(), entries.get(0)._user);
+        assertEquals(BigInteger.ZERO, entries.get(0)._balance);
+        assertEquals(BigInteger.ONE, dexScore.call("totalDexAddresses", poolId));
+        Executable updateAgain = () -> dexScore.invoke(sm.createAccount(), "updateIcxBucketRewards", BigInteger.ONE);
+        expectErrorMessage(updateAgain, "No orders in bucket 1");
+
+        dexScore.invoke(suppliers[0], "cancelSicxicxOrder");
+        contextMock.verify(() -> Context.transfer(suppliers[0].getAddress(), newOrderValue));
+        assertEquals(BigInteger.ZERO, dexScore.call("totalDexAddresses", poolId));
+    }
+
     @Test
     void onIRC31Received() {
         // Arrange.
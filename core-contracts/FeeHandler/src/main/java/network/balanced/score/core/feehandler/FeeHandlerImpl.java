@@ -169,6 +169,17 @@ public class FeeHandlerImpl implements FeeHandler {
         return FeeRouter.balnRouteLimit.get();
     }
 
+    @External
+    public void setCompactSwapData(boolean _enabled) {
+        onlyGovernance();
+        FeeRouter.compactSwapData.set(_enabled);
+    }
+
+    @External(readonly = true)
+    public boolean isCompactSwapData() {
+        return FeeRouter.compactSwapData.getOrDefault(false);
+    }
+
     @External
     public void addDefaultRoute(Address token) {
         FeeRouter.addDefaultRoute(token);
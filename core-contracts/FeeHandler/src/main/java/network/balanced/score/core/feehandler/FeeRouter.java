@@ -21,6 +21,7 @@ import com.eclipsesource.json.JsonArray;
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 import network.balanced.score.lib.utils.IterableDictDB;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import score.Address;
 import score.Context;
 import score.DictDB;
@@ -41,12 +42,14 @@ public class FeeRouter {
     private static final String ROUTE_INDEX = "routes_index";
     private static final String ROUTE_LIMIT = "route_limit";
     private static final String BALN_ROUTE_LIMIT = "baln_route_limit";
+    private static final String COMPACT_SWAP_DATA = "compact_swap_data";
 
     public static final VarDB<Integer> routeIndex = Context.newVarDB(ROUTE_INDEX, Integer.class);
     private static final IterableDictDB<Address, String> routes = new IterableDictDB<>(ROUTES, String.class,
             Address.class, false);
     public static final DictDB<Address, BigInteger> routeLimit = Context.newDictDB(ROUTE_LIMIT, BigInteger.class);
     public static final VarDB<BigInteger> balnRouteLimit = Context.newVarDB(BALN_ROUTE_LIMIT, BigInteger.class);
+    public static final VarDB<Boolean> compactSwapData = Context.newVarDB(COMPACT_SWAP_DATA, Boolean.class);
 
     public static void addDefaultRoute(Address token) {
         Context.require(!arrayDbContains(acceptedDividendsTokens, token), "Token is accepted, should not be routed");
@@ -207,16 +210,29 @@ public class FeeRouter {
         Context.call(_token, "transfer", _to, _amount, _data);
     }
 
+    // The compact encoding is only understood by Router and Dex versions that accept it, JSON stays the default
     static byte[] createDataFieldRouter(JsonArray _path) {
-        JsonObject params = Json.object().add("path", _path);
-        JsonObject data = new JsonObject();
-        data.add("method", "_swap");
-        data.add("params", params);
-        return data.toString().getBytes();
+        if (!compactSwapData.getOrDefault(false)) {
+            return createSwapJson(Json.object().add("path", _path));
+        }
+
+        Address[] path = new Address[_path.size()];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = Address.fromString(_path.get(i).asString());
+        }
+
+        return TokenFallbackData.encodeSwap(null, path, null, null);
     }
 
     static byte[] createDataFieldDex(Address _toToken) {
-        JsonObject params = Json.object().add("toToken", _toToken.toString());
+        if (!compactSwapData.getOrDefault(false)) {
+            return createSwapJson(Json.object().add("toToken", _toToken.toString()));
+        }
+
+        return TokenFallbackData.encodeSwap(_toToken, null, null, null);
+    }
+
+    private static byte[] createSwapJson(JsonObject params) {
         JsonObject data = new JsonObject();
         data.add("method", "_swap");
         data.add("params", params);
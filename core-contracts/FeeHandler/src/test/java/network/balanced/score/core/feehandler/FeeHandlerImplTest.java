@@ -29,6 +29,7 @@ import network.balanced.score.lib.interfaces.tokens.IRC2ScoreInterface;
 import network.balanced.score.lib.test.mock.MockBalanced;
 import network.balanced.score.lib.test.mock.MockContract;
 import network.balanced.score.lib.utils.Names;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
@@ -388,6 +389,51 @@ class FeeHandlerImplTest extends TestBase {
         verify(token2.mock).transfer(eq(mockBalanced.dex.getAddress()), eq(balance2), any(byte[].class));
     }
 
+    @Test
+    void manualRoute_compactSwapData() throws Exception {
+        // Arrange
+        Account caller = sm.createAccount();
+        Address[] path = new Address[]{bnusd.getAddress(), baln.getAddress()};
+        MockContract<IRC2> token1 = new MockContract<>(IRC2ScoreInterface.class, IRC2.class, sm, owner);
+        MockContract<IRC2> token2 = new MockContract<>(IRC2ScoreInterface.class, IRC2.class, sm, owner);
+        BigInteger balance1 = BigInteger.valueOf(7);
+        BigInteger balance2 = BigInteger.valueOf(3);
+
+        when(token1.mock.balanceOf(feeHandler.getAddress())).thenReturn(balance1);
+        when(token2.mock.balanceOf(feeHandler.getAddress())).thenReturn(balance2);
+
+        // Act
+        assertFalse((boolean) feeHandler.call("isCompactSwapData"));
+        feeHandler.invoke(caller, "routeToken", token1.getAddress(), path);
+        feeHandler.invoke(caller, "routeToken", token2.getAddress(), new Address[]{});
+
+        feeHandler.invoke(governance.account, "setCompactSwapData", true);
+        assertTrue((boolean) feeHandler.call("isCompactSwapData"));
+        feeHandler.invoke(caller, "routeToken", token1.getAddress(), path);
+        feeHandler.invoke(caller, "routeToken", token2.getAddress(), new Address[]{});
+
+        // Assert
+        byte[] routerJson = ("{\"method\":\"_swap\",\"params\":{\"path\":[\"" + bnusd.getAddress() + "\",\"" +
+                baln.getAddress() + "\"]}}").getBytes();
+        byte[] dexJson = ("{\"method\":\"_swap\",\"params\":{\"toToken\":\"" + baln.getAddress() + "\"}}").getBytes();
+        verify(token1.mock).transfer(mockBalanced.router.getAddress(), balance1, routerJson);
+        verify(token2.mock).transfer(mockBalanced.dex.getAddress(), balance2, dexJson);
+
+        byte[] routerData = TokenFallbackData.encodeSwap(null, path, null, null);
+        byte[] dexData = TokenFallbackData.encodeSwap(baln.getAddress(), null, null, null);
+        verify(token1.mock).transfer(mockBalanced.router.getAddress(), balance1, routerData);
+        verify(token2.mock).transfer(mockBalanced.dex.getAddress(), balance2, dexData);
+    }
+
+    @Test
+    void setCompactSwapData_onlyGovernance() {
+        Account nonGovernance = sm.createAccount();
+        String expectedErrorMessage = "Authorization Check: Authorization failed. Caller: " + nonGovernance.getAddress() +
+                " Authorized Caller: " + governance.getAddress();
+        Executable nonGovernanceCall = () -> feeHandler.invoke(nonGovernance, "setCompactSwapData", true);
+        expectErrorMessage(nonGovernanceCall, expectedErrorMessage);
+    }
+
     @Test
     void manualRoute_restrictions() throws Exception {
         // Arrange
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.core.loans;
+
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.WriterConfig;
+import com.iconloop.score.test.Account;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Wall-time smoke benchmark of the Loans hot paths against synthetic populations of positions, the results are
+ * written as a JSON baseline. Population sizes, iterations and the output file are set with the system properties
+ * loans.benchmark.positions (comma separated), loans.benchmark.iterations and loans.benchmark.output.
+ * <p>
+ * This is not a step-cost benchmark. The unit test service manager meters neither steps nor storage reads and
+ * writes, so the numbers are JVM wall time of the unit test implementation. They catch gross regressions, such as
+ * an operation that grows with the number of positions, but say nothing about on-chain fees. Step usage has to be
+ * taken from the integration test network.
+ */
+class LoansBenchmark extends LoansTestBase {
+    private static final String POSITIONS = System.getProperty("loans.benchmark.positions", "1000");
+    private static final int ITERATIONS = Integer.getInteger("loans.benchmark.iterations", 20);
+    private static final String OUTPUT = System.getProperty("loans.benchmark.output",
+            "build/benchmark/loans-benchmark.json");
+
+    private final BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+    private final BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+    private final BigInteger repayment = BigInteger.TEN.multiply(EXA);
+    private final BigInteger withdrawal = BigInteger.TEN.multiply(EXA);
+    private final BigInteger rebalanceAmount = BigInteger.TEN.multiply(EXA);
+
+    @Test
+    void benchmarkHotPaths() throws Exception {
+        JsonArray results = new JsonArray();
+        for (String population : POSITIONS.split(",")) {
+            setup();
+            results.add(benchmarkPopulation(Integer.parseInt(population.trim())));
+        }
+
+        Path output = Path.of(OUTPUT);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+
+        Files.writeString(output, results.toString(WriterConfig.PRETTY_PRINT), StandardCharsets.UTF_8);
+    }
+
+    private JsonObject benchmarkPopulation(int positionCount) {
+        List<Account> borrowers = new ArrayList<>(positionCount);
+        for (int i = 0; i < positionCount; i++) {
+            Account borrower = sm.createAccount();
+            takeLoanICX(borrower, "bnUSD", collateral, loan);
+            borrowers.add(borrower);
+        }
+
+        int iterations = Math.min(ITERATIONS, positionCount);
+        Account liquidator = accounts.get(0);
+        JsonObject operations = new JsonObject();
+
+        operations.add("depositAndBorrow", measure(iterations,
+                i -> takeLoanICX(sm.createAccount(), "bnUSD", collateral, loan)));
+        operations.add("returnAsset", measure(iterations,
+                i -> loans.invoke(borrowers.get(i), "returnAsset", "bnUSD", repayment, "sICX")));
+        operations.add("withdrawCollateral", measure(iterations,
+                i -> loans.invoke(borrowers.get(i), "withdrawCollateral", withdrawal, "sICX")));
+
+        mockSicxBnusdPrice(EXA);
+        mockSwap(bnusd, rebalanceAmount, rebalanceAmount);
+        operations.add("raisePrice", measure(iterations,
+                i -> loans.invoke(rebalancing, "raisePrice", sicx.getAddress(), rebalanceAmount)));
+
+        mockSwap(sicx, rebalanceAmount, rebalanceAmount);
+        operations.add("lowerPrice", measure(iterations,
+                i -> loans.invoke(rebalancing, "lowerPrice", sicx.getAddress(), rebalanceAmount)));
+
+        mockOraclePrice("bnUSD", EXA.multiply(BigInteger.valueOf(4)));
+        operations.add("liquidate", measure(iterations,
+                i -> loans.invoke(liquidator, "liquidate", borrowers.get(i).getAddress(), "sICX")));
+
+        return new JsonObject()
+                .add("metric", "wall_time_ns")
+                .add("positions", positionCount)
+                .add("iterations", iterations)
+                .add("redeem_batch_size", (int) getParam("redeem batch size"))
+                .add("operations", operations);
+    }
+
+    private JsonObject measure(int iterations, IntConsumer operation) {
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.accept(i);
+            long elapsed = System.nanoTime() - start;
+
+            total += elapsed;
+            min = Math.min(min, elapsed);
+            max = Math.max(max, elapsed);
+        }
+
+        return new JsonObject()
+                .add("avg_ns", total / iterations)
+                .add("min_ns", min)
+                .add("max_ns", max);
+    }
+}
@@ -23,23 +23,31 @@ import network.balanced.score.core.loans.asset.Asset;
 import network.balanced.score.core.loans.asset.AssetDB;
 import network.balanced.score.core.loans.collateral.Collateral;
 import network.balanced.score.core.loans.collateral.CollateralDB;
+import network.balanced.score.core.loans.linkedlist.LinkedListDB;
+import network.balanced.score.core.loans.positions.LiquidationIndex;
 import network.balanced.score.core.loans.positions.Position;
 import network.balanced.score.core.loans.positions.PositionsDB;
 import network.balanced.score.core.loans.utils.PositionBatch;
 import network.balanced.score.core.loans.utils.Token;
+import network.balanced.score.core.loans.utils.TokenCache;
 import network.balanced.score.lib.interfaces.Loans;
 import network.balanced.score.lib.structs.PrepDelegations;
 import network.balanced.score.lib.structs.RewardsDataEntry;
 import network.balanced.score.lib.utils.Names;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import score.Address;
+import score.ByteArrayObjectWriter;
 import score.Context;
+import score.DictDB;
 import score.annotation.EventLog;
 import score.annotation.External;
 import score.annotation.Optional;
 import score.annotation.Payable;
+import scorex.util.ArrayList;
 import scorex.util.HashMap;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 import static network.balanced.score.core.loans.LoansVariables.loansOn;
@@ -79,6 +87,9 @@ public class LoansImpl implements Loans {
             CollateralDB.migrateToNewDBs();
             AssetDB.migrateToNewDBs();
         }
+
+        CollateralDB.initializeTotalDeposits();
+        LiquidationIndex.initializeBackfill();
     }
 
     @External(readonly = true)
@@ -139,12 +150,75 @@ public class LoansImpl implements Loans {
         return CollateralDB.getTotalCollateral();
     }
 
+    @External(readonly = true)
+    public Map<String, Object> getCollateralTotals(String collateralSymbol) {
+        Context.require(arrayDbContains(CollateralDB.collateralList, collateralSymbol),
+                TAG + ": " + collateralSymbol + " is not a supported collateral type.");
+        DictDB<String, BigInteger> collateralDebts = totalPerCollateralDebts.at(collateralSymbol);
+        Map<String, BigInteger> debts = new HashMap<>();
+        int assetCount = AssetDB.assetList.size();
+        for (int i = 0; i < assetCount; i++) {
+            String assetSymbol = AssetDB.assetList.get(i);
+            debts.put(assetSymbol, collateralDebts.getOrDefault(assetSymbol, BigInteger.ZERO));
+        }
+
+        Map<String, Object> totals = new HashMap<>();
+        totals.put("collateral", CollateralDB.getTotalDeposits(collateralSymbol));
+        totals.put("debt", debts);
+        return totals;
+    }
+
     @External(readonly = true)
     public Map<String, Object> getAccountPositions(Address _owner) {
         Context.require(PositionsDB.hasPosition(_owner), _owner + " does not have a position in Balanced");
         return PositionsDB.listPosition(_owner);
     }
 
+    @External(readonly = true)
+    public List<Map<String, Object>> getLiquidationCandidates(String collateral, BigInteger priceHint, int limit) {
+        Context.require(limit > 0 && limit <= MAX_LIQUIDATION_CANDIDATES, TAG + ": Limit must be between 1 and " +
+                MAX_LIQUIDATION_CANDIDATES);
+        Context.require(LiquidationIndex.isBackfilled(), TAG + ": Liquidation index backfill is not complete");
+        int assetCount = AssetDB.assetList.size();
+        for (int i = 0; i < assetCount; i++) {
+            String assetSymbol = AssetDB.assetList.get(i);
+            Context.require(assetSymbol.equals(BNUSD_SYMBOL) ||
+                    AssetDB.getAsset(assetSymbol).getBorrowers(collateral).size() == 0, TAG + ": Liquidation index " +
+                    "only covers bnUSD debt, " + assetSymbol + " is borrowed against " + collateral);
+        }
+        BigInteger liquidationRatio = getLiquidationRatio(collateral);
+        Context.require(liquidationRatio != null && liquidationRatio.compareTo(BigInteger.ZERO) > 0, "Liquidation " +
+                "ratio for " + collateral + " is not set");
+
+        TokenCache tokenCache = new TokenCache();
+        Token collateralContract = new Token(CollateralDB.getCollateral(collateral).getAssetAddress(), tokenCache);
+        BigInteger collateralDecimals = pow(BigInteger.TEN, collateralContract.decimals().intValue());
+
+        BigInteger collateralPrice = priceHint;
+        if (collateralPrice.signum() == 0) {
+            Token bnusd = new Token(AssetDB.getAsset(BNUSD_SYMBOL).getAssetAddress(), tokenCache);
+            collateralPrice = collateralContract.lastPriceInLoop().multiply(EXA).divide(bnusd.lastPriceInLoop());
+        }
+        Context.require(collateralPrice.signum() > 0, TAG + ": Price hint must be positive");
+
+        BigInteger thresholdRatio = liquidationRatio.multiply(EXA).multiply(collateralDecimals)
+                .divide(POINTS.multiply(collateralPrice));
+        return LiquidationIndex.getCandidates(collateral, thresholdRatio, limit);
+    }
+
+    @External
+    public void backfillLiquidationIndex(int _batchSize) {
+        only(admin);
+        Context.require(_batchSize > 0, TAG + ": Batch size must be positive");
+        Context.require(!LiquidationIndex.isBackfilled(), TAG + ": Liquidation index is already backfilled");
+        LiquidationIndex.backfill(_batchSize);
+    }
+
+    @External(readonly = true)
+    public boolean isLiquidationIndexBackfilled() {
+        return LiquidationIndex.isBackfilled();
+    }
+
     @External(readonly = true)
     public Map<String, Map<String, Object>> getAvailableAssets() {
         return AssetDB.getActiveAssets();
@@ -160,6 +234,31 @@ public class LoansImpl implements Loans {
         return PositionsDB.size();
     }
 
+    @External(readonly = true)
+    public Map<String, Object> getBorrowers(String collateralSymbol, String assetSymbol, int startId, int limit) {
+        Context.require(limit > 0 && limit <= MAX_BORROWERS_PAGE_SIZE,
+                TAG + ": Limit must be between 1 and " + MAX_BORROWERS_PAGE_SIZE);
+        Context.require(arrayDbContains(CollateralDB.collateralList, collateralSymbol),
+                TAG + ": " + collateralSymbol + " is not a supported collateral type.");
+        Context.require(arrayDbContains(AssetDB.assetList, assetSymbol),
+                TAG + ": " + assetSymbol + " is not a supported asset.");
+        PositionBatch page = AssetDB.getAsset(assetSymbol).getBorrowers(collateralSymbol).readPage(startId, limit);
+
+        List<Map<String, Object>> borrowers = new ArrayList<>();
+        for (int i = 0; i < page.size; i++) {
+            borrowers.add(Map.of(
+                    "id", page.ids[i],
+                    "address", PositionsDB.uncheckedGet(page.ids[i]).getAddress(),
+                    "debt", page.debts[i]
+            ));
+        }
+
+        return Map.of(
+                "borrowers", borrowers,
+                "next", page.nextId
+        );
+    }
+
     @External(readonly = true)
     public boolean hasDebt(Address _owner) {
         return PositionsDB.getPosition(_owner, true).hasDebt();
@@ -219,6 +318,36 @@ public class LoansImpl implements Loans {
         );
     }
 
+    @External(readonly = true)
+    public Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners) {
+        Context.require(_name.equals("Loans"), TAG + ": Unsupported data source name");
+
+        List<BigInteger> balances = new ArrayList<>();
+        for (Address owner : _owners) {
+            int id = PositionsDB.getAddressIds(owner);
+            if (id < 1) {
+                balances.add(BigInteger.ZERO);
+            } else {
+                balances.add(PositionsDB.get(id).getTotalDebt(BNUSD_SYMBOL));
+            }
+        }
+
+        return Map.of(
+                "_balances", balances,
+                "_totalSupply", totalDebts.getOrDefault(BNUSD_SYMBOL, BigInteger.ZERO)
+        );
+    }
+
+    @External(readonly = true)
+    public Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner) {
+        Map<String, Map<String, BigInteger>> rewardsData = new HashMap<>();
+        for (String name : _names) {
+            rewardsData.put(name, getBalanceAndSupply(name, _owner));
+        }
+
+        return rewardsData;
+    }
+
     @External(readonly = true)
     public BigInteger getBnusdValue(String _name) {
         return getTotalDebt(BNUSD_SYMBOL);
@@ -248,14 +377,24 @@ public class LoansImpl implements Loans {
                         collateral.getAssetAddress().equals(token),
                 TAG + ": The Balanced Loans contract does not accept that token type.");
 
-        String unpackedData = new String(_data);
-        Context.require(!unpackedData.equals(""), TAG + ": Token Fallback: Data can't be empty");
+        String assetToBorrow;
+        BigInteger requestedAmount;
+        if (TokenFallbackData.isEncoded(_data)) {
+            TokenFallbackData data = TokenFallbackData.decode(_data);
+            Context.require(data.method == TokenFallbackData.DEPOSIT_AND_BORROW,
+                    TAG + ": Unsupported token fallback method");
+            assetToBorrow = data.asset;
+            requestedAmount = data.amount == null ? BigInteger.ZERO : data.amount;
+        } else {
+            String unpackedData = new String(_data);
+            Context.require(!unpackedData.equals(""), TAG + ": Token Fallback: Data can't be empty");
 
-        JsonObject json = Json.parse(unpackedData).asObject();
+            JsonObject json = Json.parse(unpackedData).asObject();
 
-        String assetToBorrow = json.get("_asset").asString();
-        JsonValue amount = json.get("_amount");
-        BigInteger requestedAmount = amount == null ? null : convertToNumber(amount);
+            assetToBorrow = json.get("_asset").asString();
+            JsonValue amount = json.get("_amount");
+            requestedAmount = amount == null ? null : convertToNumber(amount);
+        }
 
         depositCollateral(collateralSymbol, _value, _from);
         if (BigInteger.ZERO.compareTo(requestedAmount) < 0) {
@@ -426,8 +565,8 @@ public class LoansImpl implements Loans {
         BigInteger poolID = Context.call(BigInteger.class, dex.get(), "getPoolId", _collateralAddress, assetAddress);
         BigInteger rate = Context.call(BigInteger.class, dex.get(), "getBasePriceInQuote", poolID);
 
-        PositionBatch batch = asset.getBorrowers(collateralSymbol).readDataBatch(batchSize);
-        Map<Integer, BigInteger> positionsMap = batch.positions;
+        LinkedListDB borrowers = asset.getBorrowers(collateralSymbol);
+        PositionBatch batch = borrowers.readDataBatch(batchSize);
 
         BigInteger collateralToSell =
                 maxRetirePercent.get().multiply(batch.totalDebt).multiply(EXA).divide(POINTS.multiply(rate));
@@ -445,12 +584,14 @@ public class LoansImpl implements Loans {
         BigInteger remainingSupply = batch.totalDebt;
         BigInteger remainingAsset = assetReceived;
 
-        StringBuilder changeLog = new StringBuilder("{");
+        BigInteger[] newDebts = new BigInteger[batch.size];
         RewardsDataEntry[] rewardsBatchList = new RewardsDataEntry[batch.size];
-        int dataEntryIndex = 0;
-        for (Map.Entry<Integer, BigInteger> entry : positionsMap.entrySet()) {
-            int id = entry.getKey();
-            BigInteger userDebt = entry.getValue();
+        BigInteger totalDebtChange = BigInteger.ZERO;
+        ByteArrayObjectWriter changeLog = Context.newByteArrayObjectWriter("RLPn");
+        changeLog.beginList(batch.size);
+        for (int i = 0; i < batch.size; i++) {
+            int id = batch.ids[i];
+            BigInteger userDebt = batch.debts[i];
             Position position = PositionsDB.uncheckedGet(id);
 
             BigInteger loanShare = remainingAsset.multiply(userDebt).divide(remainingSupply);
@@ -459,26 +600,27 @@ public class LoansImpl implements Loans {
             RewardsDataEntry userEntry = new RewardsDataEntry();
             userEntry._user = position.getAddress();
             userEntry._balance = position.getTotalDebt(assetSymbol);
-            rewardsBatchList[dataEntryIndex] = userEntry;
-            dataEntryIndex = dataEntryIndex + 1;
+            rewardsBatchList[i] = userEntry;
 
             BigInteger collateralShare = collateralToSell.multiply(userDebt).divide(remainingSupply);
             collateralToSell = collateralToSell.subtract(collateralShare);
 
-            position.setDebt(collateralSymbol, assetSymbol, userDebt.subtract(loanShare));
-            position.setCollateral(collateralSymbol,
-                    position.getCollateral(collateralSymbol).subtract(collateralShare));
+            newDebts[i] = userDebt.subtract(loanShare);
+            BigInteger newCollateral = position.getCollateral(collateralSymbol).subtract(collateralShare);
+            totalDebtChange = totalDebtChange.add(position.rebalance(collateralSymbol, assetSymbol, newDebts[i],
+                    newCollateral));
 
             remainingSupply = remainingSupply.subtract(userDebt);
-            changeLog.append("'" + id + "': {" +
-                    "'d': " + loanShare.negate() + ", " +
-                    "'c': " + collateralShare.negate() + "}, ");
+            writeRebalanceChange(changeLog, id, loanShare.negate(), collateralShare.negate());
         }
+        changeLog.end();
 
+        borrowers.updateDataBatch(batch, newDebts);
+        Position.updateTotalDebt(collateralSymbol, assetSymbol, totalDebtChange);
         Context.call(rewards.get(), "updateBatchRewardsData", "Loans", oldTotalDebt, rewardsBatchList);
 
-        changeLog.delete(changeLog.length() - 2, changeLog.length()).append("}");
-        Rebalance(Context.getCaller(), assetSymbol, changeLog.toString(), batch.totalDebt);
+        recordRebalanceThroughput(batch);
+        Rebalance(Context.getCaller(), assetSymbol, changeLog.toByteArray(), batch.totalDebt);
     }
 
     @External
@@ -500,8 +642,8 @@ public class LoansImpl implements Loans {
         BigInteger oldTotalDebt = totalDebts.getOrDefault(assetSymbol, BigInteger.ZERO);
         int batchSize = redeemBatch.get();
 
-        PositionBatch batch = asset.getBorrowers(collateralSymbol).readDataBatch(batchSize);
-        Map<Integer, BigInteger> positionsMap = batch.positions;
+        LinkedListDB borrowers = asset.getBorrowers(collateralSymbol);
+        PositionBatch batch = borrowers.readDataBatch(batchSize);
 
         BigInteger assetToSell = maxRetirePercent.get().multiply(batch.totalDebt).divide(POINTS);
         assetToSell = assetToSell.min(_total_tokens_required);
@@ -520,12 +662,14 @@ public class LoansImpl implements Loans {
         BigInteger remainingSupply = batch.totalDebt;
         BigInteger remainingAsset = assetToSell;
 
-        StringBuilder changeLog = new StringBuilder("{");
+        BigInteger[] newDebts = new BigInteger[batch.size];
         RewardsDataEntry[] rewardsBatchList = new RewardsDataEntry[batch.size];
-        int dataEntryIndex = 0;
-        for (Map.Entry<Integer, BigInteger> entry : positionsMap.entrySet()) {
-            int id = entry.getKey();
-            BigInteger userDebt = entry.getValue();
+        BigInteger totalDebtChange = BigInteger.ZERO;
+        ByteArrayObjectWriter changeLog = Context.newByteArrayObjectWriter("RLPn");
+        changeLog.beginList(batch.size);
+        for (int i = 0; i < batch.size; i++) {
+            int id = batch.ids[i];
+            BigInteger userDebt = batch.debts[i];
             Position position = PositionsDB.uncheckedGet(id);
 
             BigInteger loanShare = remainingAsset.multiply(userDebt).divide(remainingSupply);
@@ -534,25 +678,43 @@ public class LoansImpl implements Loans {
             RewardsDataEntry userEntry = new RewardsDataEntry();
             userEntry._user = position.getAddress();
             userEntry._balance = position.getTotalDebt(assetSymbol);
-            rewardsBatchList[dataEntryIndex] = userEntry;
-            dataEntryIndex = dataEntryIndex + 1;
+            rewardsBatchList[i] = userEntry;
 
             BigInteger collateralShare = remainingCollateral.multiply(userDebt).divide(remainingSupply);
             remainingCollateral = remainingCollateral.subtract(collateralShare);
 
-            position.setDebt(collateralSymbol, assetSymbol, userDebt.add(loanShare));
-            position.setCollateral(collateralSymbol, position.getCollateral(collateralSymbol).add(collateralShare));
+            newDebts[i] = userDebt.add(loanShare);
+            BigInteger newCollateral = position.getCollateral(collateralSymbol).add(collateralShare);
+            totalDebtChange = totalDebtChange.add(position.rebalance(collateralSymbol, assetSymbol, newDebts[i],
+                    newCollateral));
 
             remainingSupply = remainingSupply.subtract(userDebt);
-            changeLog.append("'" + id + "': {" +
-                    "'d': " + loanShare + ", " +
-                    "'c': " + collateralShare + "}, ");
+            writeRebalanceChange(changeLog, id, loanShare, collateralShare);
         }
+        changeLog.end();
 
+        borrowers.updateDataBatch(batch, newDebts);
+        Position.updateTotalDebt(collateralSymbol, assetSymbol, totalDebtChange);
         Context.call(rewards.get(), "updateBatchRewardsData", "Loans", oldTotalDebt, rewardsBatchList);
 
-        changeLog.delete(changeLog.length() - 2, changeLog.length()).append("}");
-        Rebalance(Context.getCaller(), assetSymbol, changeLog.toString(), batch.totalDebt);
+        recordRebalanceThroughput(batch);
+        Rebalance(Context.getCaller(), assetSymbol, changeLog.toByteArray(), batch.totalDebt);
+    }
+
+    private void recordRebalanceThroughput(PositionBatch batch) {
+        rebalanceThroughput.set("positions", BigInteger.valueOf(batch.size));
+        rebalanceThroughput.set("debt", batch.totalDebt);
+        rebalanceThroughput.set("block", BigInteger.valueOf(Context.getBlockHeight()));
+    }
+
+    // Each change is encoded as [position id, debt change, collateral change].
+    private void writeRebalanceChange(ByteArrayObjectWriter changeLog, int id, BigInteger debtChange,
+                                      BigInteger collateralChange) {
+        changeLog.beginList(3);
+        changeLog.write(id);
+        changeLog.write(debtChange);
+        changeLog.write(collateralChange);
+        changeLog.end();
     }
 
     @External
@@ -591,32 +753,101 @@ public class LoansImpl implements Loans {
         String collateralSymbol = optionalDefault(_collateralSymbol, SICX_SYMBOL);
         Context.require(PositionsDB.hasPosition(_owner), TAG + ": This address does not have a position on Balanced.");
         Position position = PositionsDB.getPosition(_owner);
-        Standings standing = position.getStanding(collateralSymbol, false).standing;
+        BigInteger oldTotalDebt = totalDebts.getOrDefault(BNUSD_SYMBOL, BigInteger.ZERO);
+        BigInteger oldUserDebt = position.getTotalDebt(BNUSD_SYMBOL);
 
-        if (standing != Standings.LIQUIDATE) {
+        BigInteger reward = liquidatePosition(position, collateralSymbol, getActiveAssetSymbols(), new TokenCache());
+        if (reward == null) {
             return;
         }
 
-        BigInteger collateral = position.getCollateral(collateralSymbol);
-        BigInteger reward = collateral.multiply(liquidationReward.get()).divide(POINTS);
-        BigInteger forPool = collateral.subtract(reward);
-        BigInteger totalDebt = position.totalDebtInLoop(collateralSymbol, false);
+        Context.call(rewards.get(), "updateRewardsData", "Loans", oldTotalDebt, _owner, oldUserDebt);
+        transferCollateral(collateralSymbol, Context.getCaller(), reward, "Liquidation reward of", new byte[0]);
+    }
+
+    @External
+    public void liquidateBatch(Address[] owners, @Optional String collateralSymbol) {
+        loansOn();
+        String collateral = optionalDefault(collateralSymbol, SICX_SYMBOL);
+        Context.require(owners.length > 0, TAG + ": No positions to liquidate.");
+
         BigInteger oldTotalDebt = totalDebts.getOrDefault(BNUSD_SYMBOL, BigInteger.ZERO);
+        String[] activeAssetSymbols = getActiveAssetSymbols();
+        TokenCache tokenCache = new TokenCache();
+
+        RewardsDataEntry[] liquidatedEntries = new RewardsDataEntry[owners.length];
+        int liquidatedCount = 0;
+        BigInteger totalReward = BigInteger.ZERO;
+        for (Address owner : owners) {
+            if (!PositionsDB.hasPosition(owner)) {
+                continue;
+            }
 
-        int assetSymbolsCount = AssetDB.assetList.size();
+            Position position = PositionsDB.getPosition(owner);
+            BigInteger oldUserDebt = position.getTotalDebt(BNUSD_SYMBOL);
+            BigInteger reward = liquidatePosition(position, collateral, activeAssetSymbols, tokenCache);
+            if (reward == null) {
+                continue;
+            }
 
+            RewardsDataEntry userEntry = new RewardsDataEntry();
+            userEntry._user = owner;
+            userEntry._balance = oldUserDebt;
+            liquidatedEntries[liquidatedCount] = userEntry;
+            liquidatedCount = liquidatedCount + 1;
+            totalReward = totalReward.add(reward);
+        }
+
+        if (liquidatedCount == 0) {
+            return;
+        }
+
+        RewardsDataEntry[] rewardsBatchList = new RewardsDataEntry[liquidatedCount];
+        for (int i = 0; i < liquidatedCount; i++) {
+            rewardsBatchList[i] = liquidatedEntries[i];
+        }
+
+        Context.call(rewards.get(), "updateBatchRewardsData", "Loans", oldTotalDebt, rewardsBatchList);
+        transferCollateral(collateral, Context.getCaller(), totalReward, "Liquidation reward of", new byte[0]);
+    }
+
+    private String[] getActiveAssetSymbols() {
+        int assetSymbolsCount = AssetDB.assetList.size();
+        String[] symbols = new String[assetSymbolsCount];
+        int activeCount = 0;
         for (int i = 0; i < assetSymbolsCount; i++) {
             String symbol = AssetDB.assetList.get(i);
-            Asset asset = AssetDB.getAsset(symbol);
-            if (!asset.isActive()) {
-                continue;
+            if (AssetDB.getAsset(symbol).isActive()) {
+                symbols[activeCount] = symbol;
+                activeCount = activeCount + 1;
             }
+        }
+
+        String[] activeSymbols = new String[activeCount];
+        for (int i = 0; i < activeCount; i++) {
+            activeSymbols[i] = symbols[i];
+        }
+
+        return activeSymbols;
+    }
+
+    private BigInteger liquidatePosition(Position position, String collateralSymbol, String[] activeAssetSymbols,
+                                         TokenCache tokenCache) {
+        Standings standing = position.getStanding(collateralSymbol, false, tokenCache).standing;
+        if (standing != Standings.LIQUIDATE) {
+            return null;
+        }
 
-            Address assetAddress = asset.getAssetAddress();
-            Token assetContract = new Token(assetAddress);
+        BigInteger collateral = position.getCollateral(collateralSymbol);
+        BigInteger reward = collateral.multiply(liquidationReward.get()).divide(POINTS);
+        BigInteger forPool = collateral.subtract(reward);
+        BigInteger totalDebt = position.totalDebtInLoop(collateralSymbol, false, tokenCache);
+
+        for (String symbol : activeAssetSymbols) {
             BigInteger debt = position.getDebt(collateralSymbol, symbol);
-            BigInteger oldUserDebt = position.getTotalDebt(symbol);
             if (debt.compareTo(BigInteger.ZERO) > 0) {
+                Asset asset = AssetDB.getAsset(symbol);
+                Token assetContract = new Token(asset.getAssetAddress(), tokenCache);
                 BigInteger badDebt = asset.getBadDebt(collateralSymbol);
                 asset.setBadDebt(collateralSymbol, badDebt.add(debt));
                 BigInteger symbolDebt = debt.multiply(assetContract.priceInLoop()).divide(EXA);
@@ -625,15 +856,16 @@ public class LoansImpl implements Loans {
                 forPool = forPool.subtract(share);
                 asset.setLiquidationPool(collateralSymbol, asset.getLiquidationPool(collateralSymbol).add(share));
                 position.setDebt(collateralSymbol, symbol, null);
-                Context.call(rewards.get(), "updateRewardsData", "Loans", oldTotalDebt, _owner, oldUserDebt);
             }
         }
 
         position.setCollateral(collateralSymbol, null);
-        transferCollateral(collateralSymbol, Context.getCaller(), reward, "Liquidation reward of", new byte[0]);
 
-        String logMessage = collateral + " liquidated from " + _owner;
-        Liquidate(_owner, collateral, logMessage);
+        Address owner = position.getAddress();
+        String logMessage = collateral + " liquidated from " + owner;
+        Liquidate(owner, collateral, logMessage);
+
+        return reward;
     }
 
     private BigInteger badDebtRedeem(Address from, String collateralSymbol, Asset asset, BigInteger badDebtAmount) {
@@ -712,13 +944,7 @@ public class LoansImpl implements Loans {
                 "your debt.");
         expectedToken.set(assetAddress);
 
-        JsonObject swapParams = Json.object()
-                .add("toToken", assetAddress.toString())
-                .add("minimumReceive", minimumDebtToRepay.toString());
-        JsonObject swapData = Json.object()
-                .add("method", "_swap")
-                .add("params", swapParams);
-        byte[] data = swapData.toString().getBytes();
+        byte[] data = createSwapData(assetAddress, minimumDebtToRepay);
 
         transferCollateral(collateralSymbol, dexAddress, collateralToSell,
                 collateralSymbol + " swapped for " + assetSymbol, data);
@@ -756,11 +982,12 @@ public class LoansImpl implements Loans {
 
         Context.require(position.getCollateral(collateralSymbol).compareTo(value) >= 0, TAG + ": Position holds less " +
                 "collateral than the requested withdrawal.");
-        BigInteger assetValue = position.totalDebtInLoop(collateralSymbol, false);
+        TokenCache tokenCache = new TokenCache();
+        BigInteger assetValue = position.totalDebtInLoop(collateralSymbol, false, tokenCache);
         BigInteger remainingCollateral = position.getCollateral(collateralSymbol).subtract(value);
 
         Address collateralAddress = CollateralDB.getCollateral(collateralSymbol).getAssetAddress();
-        Token collateralContract = new Token(collateralAddress);
+        Token collateralContract = new Token(collateralAddress, tokenCache);
         BigInteger collateralDecimals = pow(BigInteger.TEN, collateralContract.decimals().intValue());
 
         BigInteger remainingCollateralInLoop =
@@ -784,7 +1011,8 @@ public class LoansImpl implements Loans {
         Position position = PositionsDB.getPosition(from, true);
         BigInteger oldTotalDebt = totalDebts.getOrDefault(assetToBorrow, BigInteger.ZERO);
 
-        BigInteger collateral = position.totalCollateralInLoop(collateralSymbol, false);
+        TokenCache tokenCache = new TokenCache();
+        BigInteger collateral = position.totalCollateralInLoop(collateralSymbol, false, tokenCache);
         BigInteger lockingRatio = getLockingRatio(collateralSymbol);
         Context.require(lockingRatio != null && lockingRatio.compareTo(BigInteger.ZERO) > 0,
                 "Locking ratio for " + collateralSymbol + " is not set");
@@ -792,7 +1020,7 @@ public class LoansImpl implements Loans {
         BigInteger fee = originationFee.get().multiply(amount).divide(POINTS);
 
         Address borrowAssetAddress = asset.getAssetAddress();
-        Token borrowAsset = new Token(borrowAssetAddress);
+        Token borrowAsset = new Token(borrowAssetAddress, tokenCache);
         BigInteger bnUSDPriceInLoop = borrowAsset.priceInLoop();
 
         BigInteger newDebt = amount.add(fee);
@@ -807,7 +1035,7 @@ public class LoansImpl implements Loans {
             }
         }
 
-        BigInteger totalDebt = position.totalDebtInLoop(collateralSymbol, false);
+        BigInteger totalDebt = position.totalDebtInLoop(collateralSymbol, false, tokenCache);
         Context.require(totalDebt.add(newDebtValue).compareTo(maxDebtValue) <= 0,
                 TAG + ": " + collateral + " collateral is insufficient" +
                         " to originate a loan of " + amount + " " + assetToBorrow +
@@ -844,11 +1072,23 @@ public class LoansImpl implements Loans {
     }
 
     private byte[] createSwapData(Address toToken) {
-        JsonObject data = Json.object();
-        data.add("method", "_swap");
-        data.add("params", Json.object().add("toToken", toToken.toString()));
+        return createSwapData(toToken, null);
+    }
 
-        return data.toString().getBytes();
+    private byte[] createSwapData(Address toToken, BigInteger minimumReceive) {
+        // The compact encoding is only understood by Dex versions that accept it, JSON stays the default
+        if (compactSwapData.getOrDefault(false)) {
+            return TokenFallbackData.encodeSwap(toToken, null, minimumReceive, null);
+        }
+
+        JsonObject swapParams = Json.object().add("toToken", toToken.toString());
+        if (minimumReceive != null) {
+            swapParams.add("minimumReceive", minimumReceive.toString());
+        }
+        JsonObject swapData = Json.object()
+                .add("method", "_swap")
+                .add("params", swapParams);
+        return swapData.toString().getBytes();
     }
 
     private BigInteger stakeICX(BigInteger amount) {
@@ -1070,6 +1310,28 @@ public class LoansImpl implements Loans {
         redeemBatch.set(_value);
     }
 
+    @External
+    public void setCompactSwapData(boolean _enabled) {
+        only(admin);
+        compactSwapData.set(_enabled);
+    }
+
+    @External(readonly = true)
+    public boolean isCompactSwapData() {
+        return compactSwapData.getOrDefault(false);
+    }
+
+    @External(readonly = true)
+    public Map<String, Object> getRebalanceThroughput() {
+        Map<String, Object> throughput = new HashMap<>();
+        throughput.put("batch_size", redeemBatch.get());
+        throughput.put("positions", rebalanceThroughput.getOrDefault("positions", BigInteger.ZERO));
+        throughput.put("debt", rebalanceThroughput.getOrDefault("debt", BigInteger.ZERO));
+        throughput.put("block", rebalanceThroughput.getOrDefault("block", BigInteger.ZERO));
+
+        return throughput;
+    }
+
     @External(readonly = true)
     public Map<String, Object> getParameters() {
         Map<String, Object> parameters = new HashMap<>();
@@ -1141,6 +1403,6 @@ public class LoansImpl implements Loans {
     }
 
     @EventLog(indexed = 2)
-    public void Rebalance(Address account, String symbol, String change_in_pos, BigInteger total_batch_debt) {
+    public void Rebalance(Address account, String symbol, byte[] change_in_pos, BigInteger total_batch_debt) {
     }
 }
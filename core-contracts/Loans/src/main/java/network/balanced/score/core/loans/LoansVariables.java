@@ -55,6 +55,9 @@ public class LoansVariables {
 
     private static final String REDEEM_BATCH_SIZE = "redeem_batch_size";
     private static final String MAX_RETIRE_PERCENT = "max_retire_percent";
+    private static final String REBALANCE_THROUGHPUT = "rebalance_throughput";
+
+    private static final String COMPACT_SWAP_DATA = "compact_swap_data";
 
     private static final String EXPECTED_TOKEN = "expectedToken";
     private static final String AMOUNT_RECEIVED = "amountReceived";
@@ -90,6 +93,10 @@ public class LoansVariables {
     static final VarDB<Integer> maxDebtsListLength = Context.newVarDB(MAX_DEBTS_LIST_LENGTH, Integer.class);
     static final VarDB<Integer> redeemBatch = Context.newVarDB(REDEEM_BATCH_SIZE, Integer.class);
     static final VarDB<BigInteger> maxRetirePercent = Context.newVarDB(MAX_RETIRE_PERCENT, BigInteger.class);
+    static final DictDB<String, BigInteger> rebalanceThroughput = Context.newDictDB(REBALANCE_THROUGHPUT,
+            BigInteger.class);
+
+    static final VarDB<Boolean> compactSwapData = Context.newVarDB(COMPACT_SWAP_DATA, Boolean.class);
 
     static final VarDB<Address> expectedToken = Context.newVarDB(EXPECTED_TOKEN, Address.class);
     static final VarDB<BigInteger> amountReceived = Context.newVarDB(AMOUNT_RECEIVED, BigInteger.class);
@@ -16,7 +16,10 @@
 
 package network.balanced.score.core.loans.collateral;
 
+import network.balanced.score.core.loans.asset.Asset;
+import network.balanced.score.core.loans.asset.AssetDB;
 import network.balanced.score.core.loans.utils.Token;
+import network.balanced.score.core.loans.utils.TokenCache;
 import score.Address;
 import score.ArrayDB;
 import score.Context;
@@ -38,6 +41,9 @@ public class CollateralDB {
             Address.class);
     public static ArrayDB<String> collateralList = Context.newArrayDB("collateral", String.class);
     public static final DictDB<String, String> symbolMap = Context.newDictDB("symbol|address", String.class);
+    // collateral held by all positions, per collateral symbol
+    private static final DictDB<String, BigInteger> totalDeposits = Context.newDictDB("total_collateral_deposits",
+            BigInteger.class);
 
     public static void migrateToNewDBs() {
         int totalCollateralCount = collateralList.size();
@@ -83,6 +89,41 @@ public class CollateralDB {
         String symbol = collateralContract.symbol();
         symbolMap.set(symbol, collateralToAdd);
         collateralList.add(symbol);
+        totalDeposits.set(symbol, BigInteger.ZERO);
+    }
+
+    // Collateral added before the running totals existed is seeded from the balance held by Loans, which is the
+    // collateral of all positions plus the liquidation pools.
+    public static void initializeTotalDeposits() {
+        int collateralCount = collateralList.size();
+        for (int i = 0; i < collateralCount; i++) {
+            String symbol = collateralList.get(i);
+            if (totalDeposits.get(symbol) != null) {
+                continue;
+            }
+
+            Token collateralContract = new Token(getCollateral(symbol).getAssetAddress());
+            BigInteger deposits = collateralContract.balanceOf(Context.getAddress());
+            int assetCount = AssetDB.assetList.size();
+            for (int j = 0; j < assetCount; j++) {
+                Asset asset = AssetDB.getAsset(AssetDB.assetList.get(j));
+                deposits = deposits.subtract(asset.getLiquidationPool(symbol));
+            }
+
+            totalDeposits.set(symbol, deposits);
+        }
+    }
+
+    public static BigInteger getTotalDeposits(String symbol) {
+        return totalDeposits.getOrDefault(symbol, BigInteger.ZERO);
+    }
+
+    public static void updateTotalDeposits(String symbol, BigInteger change) {
+        if (change.signum() == 0) {
+            return;
+        }
+
+        totalDeposits.set(symbol, getTotalDeposits(symbol).add(change));
     }
 
     public static Map<String, String> getCollateral() {
@@ -98,6 +139,7 @@ public class CollateralDB {
 
     public static BigInteger getTotalCollateral() {
         BigInteger totalCollateral = BigInteger.ZERO;
+        TokenCache tokenCache = new TokenCache();
         int collateralCount = collateralList.size();
         for (int i = 0; i < collateralCount; i++) {
             String symbol = collateralList.get(i);
@@ -107,11 +149,17 @@ public class CollateralDB {
             }
 
             Address collateralAddress = collateral.getAssetAddress();
-            Token collateralContract = new Token(collateralAddress);
+            Token collateralContract = new Token(collateralAddress, tokenCache);
             BigInteger collateralDecimals = pow(BigInteger.TEN, collateralContract.decimals().intValue());
 
-            BigInteger value =
-                    collateralContract.balanceOf(Context.getAddress()).multiply(collateralContract.lastPriceInLoop()).divide(collateralDecimals);
+            BigInteger amount = getTotalDeposits(symbol);
+            int assetCount = AssetDB.assetList.size();
+            for (int j = 0; j < assetCount; j++) {
+                Asset asset = AssetDB.getAsset(AssetDB.assetList.get(j));
+                amount = amount.add(asset.getLiquidationPool(symbol));
+            }
+
+            BigInteger value = amount.multiply(collateralContract.lastPriceInLoop()).divide(collateralDecimals);
             totalCollateral = totalCollateral.add(value);
         }
 
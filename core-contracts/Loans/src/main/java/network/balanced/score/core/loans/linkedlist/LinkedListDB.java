@@ -19,25 +19,29 @@ package network.balanced.score.core.loans.linkedlist;
 import network.balanced.score.core.loans.utils.PositionBatch;
 import score.Context;
 import score.VarDB;
-import scorex.util.HashMap;
 
 import java.math.BigInteger;
-import java.util.Map;
 
 public class LinkedListDB {
     private final static String _NAME = "_LINKED_LISTDB";
     private final String name;
     private final String dbKey;
     private final VarDB<String> metadata;
-    private String dataString;
+    private final VarDB<byte[]> packedMetadata;
+    private boolean legacyMetadata;
+    private int storedHeadId;
+    private int storedTailId;
+    private int storedSize;
     private int headId;
     private int tailId;
     private int size;
+    private Node[] batchNodes;
 
     public LinkedListDB(String dbName) {
         name = dbName + _NAME;
         dbKey = "";
         metadata = Context.newVarDB(name + "_metadata", String.class);
+        packedMetadata = Context.newVarDB(name + "_packed_metadata", byte[].class);
         initialize();
     }
 
@@ -46,35 +50,72 @@ public class LinkedListDB {
         name = dbName + _NAME;
         dbKey = key;
         metadata = (VarDB<String>) Context.newBranchDB(name + "_metadata", String.class).at(dbKey);
+        packedMetadata = (VarDB<byte[]>) Context.newBranchDB(name + "_packed_metadata", byte[].class).at(dbKey);
         initialize();
     }
 
+    // Metadata is stored as head id, tail id and size packed into 12 bytes. Lists still holding the older
+    // "head|tail|size" string are converted on their next write.
     private void initialize() {
-        dataString = metadata.get();
-        if (dataString == null || dataString.isEmpty()) {
-            dataString = "";
-            headId = 0;
-            tailId = 0;
-            size = 0;
+        byte[] packedData = packedMetadata.get();
+        if (packedData != null) {
+            headId = readInt(packedData, 0);
+            tailId = readInt(packedData, 4);
+            size = readInt(packedData, 8);
+        } else {
+            String dataString = metadata.get();
+            if (dataString != null && !dataString.isEmpty()) {
+                int delimiter1 = dataString.indexOf("|");
+                int delimiter2 = dataString.lastIndexOf("|");
+
+                headId = Integer.parseInt(dataString.substring(0, delimiter1));
+                tailId = Integer.parseInt(dataString.substring(delimiter1 + 1, delimiter2));
+                size = Integer.parseInt(dataString.substring(delimiter2 + 1));
+                legacyMetadata = true;
+            }
+        }
+
+        storedHeadId = headId;
+        storedTailId = tailId;
+        storedSize = size;
+    }
+
+    public void serialize() {
+        if (!legacyMetadata && headId == storedHeadId && tailId == storedTailId && size == storedSize) {
             return;
         }
 
-        int delimiter1 = dataString.indexOf("|");
-        int delimiter2 = dataString.lastIndexOf("|");
+        byte[] packedData = new byte[12];
+        writeInt(packedData, 0, headId);
+        writeInt(packedData, 4, tailId);
+        writeInt(packedData, 8, size);
+        packedMetadata.set(packedData);
+        clearLegacyMetadata();
 
-        headId = Integer.parseInt(dataString.substring(0, delimiter1));
-        tailId = Integer.parseInt(dataString.substring(delimiter1 + 1, delimiter2));
-        size = Integer.parseInt(dataString.substring(delimiter2 + 1));
+        storedHeadId = headId;
+        storedTailId = tailId;
+        storedSize = size;
     }
 
-    public void serialize() {
-        String newData = headId + "|" + tailId + "|" + size;
-        if (!newData.equals(dataString)) {
-            dataString = newData;
-            metadata.set(newData);
+    private void clearLegacyMetadata() {
+        if (legacyMetadata) {
+            metadata.set(null);
+            legacyMetadata = false;
         }
     }
 
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) | ((data[offset + 2] & 0xff) << 8)
+                | (data[offset + 3] & 0xff);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
     public int size() {
         return size;
     }
@@ -135,61 +176,113 @@ public class LinkedListDB {
         serialize();
     }
 
+    // Reads up to batchSize nodes from the head. The nodes are kept until updateDataBatch, which writes their new
+    // values together with moving them behind the tail, so every node of the batch is written at most once.
     public PositionBatch readDataBatch(int batchSize) {
         Context.require(size != 0, name + ": No data in the list");
 
+        int iterations = Math.min(batchSize, size);
         PositionBatch batch = new PositionBatch();
         batch.totalDebt = BigInteger.ZERO;
-        Map<Integer, BigInteger> positionsMap = new HashMap<>();
+        batch.size = iterations;
+        batch.ids = new int[iterations];
+        batch.debts = new BigInteger[iterations];
+        batchNodes = new Node[iterations];
 
-        Node head = getNode(headId);
-        Node tail = getNode(tailId);
-        Node currentNode = head;
         int currentNodeId = headId;
-        BigInteger currentValue;
+        for (int i = 0; i < iterations; i++) {
+            if (i > 0) {
+                currentNodeId = batchNodes[i - 1].getNext();
+            }
+
+            Node currentNode = getNode(currentNodeId);
+            BigInteger currentValue = currentNode.getValue();
+            batchNodes[i] = currentNode;
+            batch.ids[i] = currentNodeId;
+            batch.debts[i] = currentValue;
+            batch.totalDebt = batch.totalDebt.add(currentValue);
+        }
 
-        positionsMap.put(headId, head.getValue());
-        batch.totalDebt = batch.totalDebt.add(head.getValue());
+        return batch;
+    }
 
-        int iterations = Math.min(batchSize, size());
-        for (int i = 1; i < iterations; i++) {
-            currentNodeId = currentNode.getNext();
-            currentNode = getNode(currentNodeId);
-            currentValue = currentNode.getValue();
-            batch.totalDebt = batch.totalDebt.add(currentValue);
-            positionsMap.put(currentNodeId, currentValue);
+    public void updateDataBatch(PositionBatch batch, BigInteger[] values) {
+        Context.require(batchNodes != null && batchNodes.length == batch.size && values.length == batch.size,
+                name + ": Batch was not read from this list");
+
+        for (int i = 0; i < batch.size; i++) {
+            batchNodes[i].setValue(values[i]);
         }
 
-        batch.positions = positionsMap;
-        batch.size = iterations;
+        Node firstNode = batchNodes[0];
+        Node lastNode = batchNodes[batch.size - 1];
+        int nextId = lastNode.getNext();
+        if (nextId != 0) {
+            Node nextHead = getNode(nextId);
+            nextHead.setPrev(0);
+            nextHead.repack();
 
-        int nextId = currentNode.getNext();
-        if (nextId == 0) {
-            return batch;
+            Node tail = getNode(tailId);
+            tail.setNext(headId);
+            tail.repack();
+
+            firstNode.setPrev(tailId);
+            lastNode.setNext(0);
+
+            tailId = batch.ids[batch.size - 1];
+            headId = nextId;
+            serialize();
         }
 
-        Node nextHead = getNode(nextId);
+        for (Node node : batchNodes) {
+            node.repack();
+        }
 
-        // Update node next to head
-        nextHead.setPrev(0);
-        nextHead.repack();
+        batchNodes = null;
+    }
 
-        // Update tail node
-        tail.setNext(headId);
-        tail.repack();
+    // Reads up to limit nodes starting at startId, or at the head when startId is 0. The returned batch holds the id
+    // to continue from in nextId, which is 0 once the tail has been read.
+    public PositionBatch readPage(int startId, int limit) {
+        PositionBatch page = new PositionBatch();
+        page.totalDebt = BigInteger.ZERO;
+        int currentNodeId = startId == 0 ? headId : startId;
+        if (size == 0) {
+            page.ids = new int[0];
+            page.debts = new BigInteger[0];
+            return page;
+        }
 
-        // Update previous head as new tail
-        head.setPrev(tailId);
-        head.repack();
+        Node currentNode = getNode(currentNodeId);
+        Context.require(currentNode.exists(), name + ": node with id " + currentNodeId + " does not exist");
 
-        currentNode.setNext(0);
-        currentNode.repack();
+        int[] ids = new int[limit];
+        BigInteger[] values = new BigInteger[limit];
+        int count = 0;
+        while (true) {
+            ids[count] = currentNodeId;
+            values[count] = currentNode.getValue();
+            page.totalDebt = page.totalDebt.add(values[count]);
+            count = count + 1;
 
-        tailId = currentNodeId;
-        headId = nextId;
-        serialize();
+            currentNodeId = currentNode.getNext();
+            if (currentNodeId == 0 || count == limit) {
+                break;
+            }
 
-        return batch;
+            currentNode = getNode(currentNodeId);
+        }
+
+        page.size = count;
+        page.ids = new int[count];
+        page.debts = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            page.ids[i] = ids[i];
+            page.debts[i] = values[i];
+        }
+        page.nextId = currentNodeId;
+
+        return page;
     }
 
     private void removeHead() {
@@ -245,8 +338,11 @@ public class LinkedListDB {
             headId = 0;
             size = 0;
             singleNode.delete();
-            dataString = "";
-            metadata.set(null);
+            packedMetadata.set(null);
+            clearLegacyMetadata();
+            storedHeadId = 0;
+            storedTailId = 0;
+            storedSize = 0;
             return;
         } else if (id == headId) {
             removeHead();
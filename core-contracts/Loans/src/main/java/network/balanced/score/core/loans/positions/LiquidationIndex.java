@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.core.loans.positions;
+
+import network.balanced.score.core.loans.collateral.CollateralDB;
+import network.balanced.score.core.loans.linkedlist.LinkedListDB;
+import score.BranchDB;
+import score.Context;
+import score.DictDB;
+import score.VarDB;
+import scorex.util.ArrayList;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import static network.balanced.score.core.loans.utils.LoansConstants.BNUSD_SYMBOL;
+import static network.balanced.score.core.loans.utils.LoansConstants.EXA;
+
+// Positions bucketed per collateral by collateral * EXA / bnUSD debt, in token units. Only bnUSD debt is indexed;
+// getLiquidationCandidates refuses to answer while any other asset is borrowed against the collateral.
+// A ratio falls in octave bitLength(ratio) and, within it, in one of SUB_BUCKETS equal slices given by the bits
+// below the leading one. Positions are appended to their bucket unsorted, so writes stay O(1); every ratio of a
+// bucket below the threshold's bucket qualifies and only the threshold's own bucket is filtered by ratio.
+// Candidates therefore come in ascending bucket order, not in exact ratio order.
+// The number of positions per octave lets a scan skip empty octaves without reading their buckets.
+public class LiquidationIndex {
+    private static final String BUCKET_DB_PREFIX = "liquidation_bucket";
+    private static final int NO_BUCKET = -1;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final BranchDB<String, DictDB<Integer, Integer>> positionBuckets = Context.newBranchDB(
+            "liquidation_position_bucket", Integer.class); // CollateralSymbol:PositionId:bucket
+    private static final BranchDB<String, DictDB<Integer, Integer>> octaveSizes = Context.newBranchDB(
+            "liquidation_octave_size", Integer.class); // CollateralSymbol:octave:positions
+
+    // Positions up to backfillEnd existed before the index and are added by backfill
+    private static final VarDB<Integer> backfillEnd = Context.newVarDB("liquidation_backfill_end", Integer.class);
+    private static final VarDB<Integer> backfillNextId = Context.newVarDB("liquidation_backfill_next_id",
+            Integer.class);
+
+    public static void initializeBackfill() {
+        if (backfillEnd.get() == null) {
+            backfillEnd.set(PositionsDB.size());
+            backfillNextId.set(1);
+        }
+    }
+
+    public static boolean isBackfilled() {
+        Integer end = backfillEnd.get();
+        return end != null && backfillNextId.getOrDefault(1) > end;
+    }
+
+    public static void backfill(int batchSize) {
+        int id = backfillNextId.getOrDefault(1);
+        int lastId = Math.min(id + batchSize - 1, backfillEnd.get());
+        int collateralCount = CollateralDB.collateralList.size();
+        for (; id <= lastId; id++) {
+            Position position = PositionsDB.uncheckedGet(id);
+            for (int i = 0; i < collateralCount; i++) {
+                String collateralSymbol = CollateralDB.collateralList.get(i);
+                updatePosition(collateralSymbol, id, position.getCollateral(collateralSymbol, true),
+                        position.getDebt(collateralSymbol, BNUSD_SYMBOL, true));
+            }
+        }
+
+        backfillNextId.set(id);
+    }
+
+    static void updatePosition(String collateralSymbol, int id, BigInteger collateral, BigInteger debt) {
+        DictDB<Integer, Integer> buckets = positionBuckets.at(collateralSymbol);
+        int previousBucket = buckets.getOrDefault(id, NO_BUCKET);
+        if (debt == null || debt.signum() == 0) {
+            if (previousBucket != NO_BUCKET) {
+                getBucket(collateralSymbol, previousBucket).remove(id);
+                buckets.set(id, null);
+                updateOctaveSize(collateralSymbol, previousBucket, -1);
+            }
+            return;
+        }
+
+        BigInteger amount = collateral == null ? BigInteger.ZERO : collateral;
+        BigInteger ratio = amount.multiply(EXA).divide(debt);
+        int bucket = getBucketId(ratio);
+        if (bucket == previousBucket) {
+            getBucket(collateralSymbol, bucket).set(id, ratio);
+            return;
+        }
+
+        if (previousBucket != NO_BUCKET) {
+            getBucket(collateralSymbol, previousBucket).remove(id);
+        }
+        getBucket(collateralSymbol, bucket).append(ratio, id);
+        buckets.set(id, bucket);
+        if (previousBucket == NO_BUCKET || getOctave(previousBucket) != getOctave(bucket)) {
+            if (previousBucket != NO_BUCKET) {
+                updateOctaveSize(collateralSymbol, previousBucket, -1);
+            }
+            updateOctaveSize(collateralSymbol, bucket, 1);
+        }
+    }
+
+    public static List<Map<String, Object>> getCandidates(String collateralSymbol, BigInteger thresholdRatio,
+                                                          int limit) {
+        List<Map<String, Object>> candidates = new ArrayList<>();
+        int lastBucket = getBucketId(thresholdRatio);
+        int lastOctave = getOctave(lastBucket);
+        DictDB<Integer, Integer> sizes = octaveSizes.at(collateralSymbol);
+        for (int octave = 0; octave <= lastOctave; octave++) {
+            if (sizes.getOrDefault(octave, 0) == 0) {
+                continue;
+            }
+
+            int firstBucket = octave * SUB_BUCKETS;
+            int octaveEnd = Math.min(firstBucket + SUB_BUCKETS - 1, lastBucket);
+            for (int bucket = firstBucket; bucket <= octaveEnd; bucket++) {
+                LinkedListDB positions = getBucket(collateralSymbol, bucket);
+                int size = positions.size();
+                int id = positions.getHeadId();
+                for (int i = 0; i < size; i++) {
+                    if (i > 0) {
+                        id = positions.getNextId(id);
+                    }
+
+                    BigInteger ratio = positions.nodeValue(id);
+                    if (bucket == lastBucket && ratio.compareTo(thresholdRatio) > 0) {
+                        continue;
+                    }
+
+                    candidates.add(Map.of(
+                            "address", PositionsDB.uncheckedGet(id).getAddress(),
+                            "ratio", ratio
+                    ));
+                    if (candidates.size() == limit) {
+                        return candidates;
+                    }
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    private static int getBucketId(BigInteger ratio) {
+        int octave = ratio.bitLength();
+        if (octave <= SUB_BUCKET_BITS) {
+            return ratio.intValue();
+        }
+
+        int slice = ratio.shiftRight(octave - SUB_BUCKET_BITS - 1).intValue() - SUB_BUCKETS;
+        return octave * SUB_BUCKETS + slice;
+    }
+
+    private static int getOctave(int bucket) {
+        return bucket / SUB_BUCKETS;
+    }
+
+    private static void updateOctaveSize(String collateralSymbol, int bucket, int change) {
+        DictDB<Integer, Integer> sizes = octaveSizes.at(collateralSymbol);
+        int octave = getOctave(bucket);
+        sizes.set(octave, sizes.getOrDefault(octave, 0) + change);
+    }
+
+    private static LinkedListDB getBucket(String collateralSymbol, int bucket) {
+        return new LinkedListDB(BUCKET_DB_PREFIX + "|" + bucket, collateralSymbol);
+    }
+}
@@ -23,6 +23,7 @@ import network.balanced.score.core.loans.collateral.Collateral;
 import network.balanced.score.core.loans.collateral.CollateralDB;
 import network.balanced.score.core.loans.utils.Standing;
 import network.balanced.score.core.loans.utils.Token;
+import network.balanced.score.core.loans.utils.TokenCache;
 import score.*;
 import scorex.util.HashMap;
 
@@ -51,7 +52,13 @@ public class Position {
             + "_status", Boolean.class);
     private final BranchDB<String, ArrayDB<Integer>> snaps = Context.newBranchDB("snaps", Integer.class);
 
+    private final BranchDB<String, DictDB<String, PositionRecord>> records = Context.newBranchDB(
+            "position_records", PositionRecord.class); // Address:CollateralSymbol:record
+
     private final String dbKey;
+    private final Map<String, PositionRecord> loadedRecords = new HashMap<>();
+    private Integer positionId;
+    private Address positionAddress;
 
     Position(String dbKey) {
         this.dbKey = dbKey;
@@ -59,10 +66,15 @@ public class Position {
 
     void setId(Integer id) {
         this.id.at(dbKey).set(id);
+        positionId = id;
     }
 
     public Integer getId() {
-        return id.at(dbKey).get();
+        if (positionId == null) {
+            positionId = id.at(dbKey).get();
+        }
+
+        return positionId;
     }
 
     void setCreated(BigInteger time) {
@@ -75,18 +87,23 @@ public class Position {
 
     public void setAddress(Address address) {
         this.address.at(dbKey).set(address);
+        positionAddress = address;
     }
 
     public Address getAddress() {
-        return address.at(dbKey).get();
-    }
+        if (positionAddress == null) {
+            positionAddress = address.at(dbKey).get();
+        }
 
-    private void setLoansPosition(String collateral, String symbol, BigInteger value) {
-        debt.at(dbKey).at(collateral).set(symbol, value);
+        return positionAddress;
     }
 
     public BigInteger getDebt(String collateral, String symbol) {
-        return debt.at(dbKey).at(collateral).getOrDefault(symbol, BigInteger.ZERO);
+        return getDebt(collateral, symbol, false);
+    }
+
+    public BigInteger getDebt(String collateral, String symbol, boolean readOnly) {
+        return getRecord(collateral, readOnly).getDebt(symbol);
     }
 
     private void setPositionTotalDebt(String symbol, BigInteger value) {
@@ -96,14 +113,19 @@ public class Position {
     public BigInteger getTotalDebt(String symbol) {
         BigInteger totalDebt = this.totalDebt.at(dbKey).get(symbol);
         if (totalDebt == null) {
-            totalDebt = getDebt(SICX_SYMBOL, symbol);
+            totalDebt = getDebt(SICX_SYMBOL, symbol, true);
         }
 
         return totalDebt;
     }
 
     public void setCollateral(String symbol, BigInteger value) {
-        collateral.at(dbKey).set(symbol, value);
+        PositionRecord record = getRecord(symbol, false);
+        BigInteger previousCollateral = record.getCollateral();
+        record.setCollateral(value);
+        CollateralDB.updateTotalDeposits(symbol, record.getCollateral().subtract(previousCollateral));
+        saveRecord(symbol, record);
+        LiquidationIndex.updatePosition(symbol, getId(), value, record.getDebt(BNUSD_SYMBOL));
     }
 
     public BigInteger getCollateral(String symbol) {
@@ -111,47 +133,137 @@ public class Position {
     }
 
     public BigInteger getCollateral(String symbol, boolean readOnly) {
-        if (symbol.equals(SICX_SYMBOL)) {
-            if (!dataMigrationStatus.at(dbKey).getOrDefault(SICX_SYMBOL, false) &&
-                    collateral.at(dbKey).getOrDefault(SICX_SYMBOL, BigInteger.ZERO).equals(BigInteger.ZERO)) {
-
-                int lastSnapIndex = snaps.at(dbKey).size() - 1;
-                int lastSnap = snaps.at(dbKey).get(lastSnapIndex);
-                BigInteger collateralAmount = assets.at(dbKey).at(lastSnap).getOrDefault(SICX_SYMBOL, BigInteger.ZERO);
-                if (readOnly) {
-                    return collateralAmount;
-                }
+        return getRecord(symbol, readOnly).getCollateral();
+    }
 
-                if (collateralAmount.compareTo(BigInteger.ZERO) > 0) {
-                    setCollateral(SICX_SYMBOL, collateralAmount);
-                }
+    public void setDataMigrationStatus(String symbol, Boolean value) {
+        dataMigrationStatus.at(dbKey).set(symbol, value);
+    }
+
+    // Collateral and debts of a collateral type are kept in one packed record. Positions still in the old
+    // per-asset layout are moved over on their first read in a transaction. Empty records are stored as well, so a
+    // migrated collateral type is never looked up in the old layout again.
+    private PositionRecord getRecord(String collateralSymbol, boolean readOnly) {
+        PositionRecord record = loadedRecords.get(collateralSymbol);
+        if (record != null) {
+            return record;
+        }
 
-                dataMigrationStatus.at(dbKey).set(SICX_SYMBOL, true);
-                return collateralAmount;
+        record = records.at(dbKey).get(collateralSymbol);
+        if (record == null) {
+            record = readLegacyRecord(collateralSymbol, readOnly);
+            if (readOnly) {
+                return record;
             }
+
+            records.at(dbKey).set(collateralSymbol, record);
+            clearLegacyRecord(collateralSymbol, record);
         }
 
-        return collateral.at(dbKey).getOrDefault(symbol, BigInteger.ZERO);
+        loadedRecords.put(collateralSymbol, record);
+        return record;
     }
 
-    public void setDataMigrationStatus(String symbol, Boolean value) {
-        dataMigrationStatus.at(dbKey).set(symbol, value);
+    private void saveRecord(String collateralSymbol, PositionRecord record) {
+        records.at(dbKey).set(collateralSymbol, record);
+    }
+
+    private PositionRecord readLegacyRecord(String collateralSymbol, boolean readOnly) {
+        PositionRecord record = new PositionRecord();
+        record.setCollateral(getLegacyCollateral(collateralSymbol, readOnly));
+
+        DictDB<String, BigInteger> legacyDebts = debt.at(dbKey).at(collateralSymbol);
+        int assetsCount = AssetDB.assetList.size();
+        for (int i = 0; i < assetsCount; i++) {
+            String assetSymbol = AssetDB.assetList.get(i);
+            record.setDebt(assetSymbol, legacyDebts.get(assetSymbol));
+        }
+
+        return record;
+    }
+
+    private void clearLegacyRecord(String collateralSymbol, PositionRecord record) {
+        if (record.getCollateral().signum() != 0) {
+            collateral.at(dbKey).set(collateralSymbol, null);
+        }
+
+        DictDB<String, BigInteger> legacyDebts = debt.at(dbKey).at(collateralSymbol);
+        for (String assetSymbol : record.debts.keySet()) {
+            legacyDebts.set(assetSymbol, null);
+        }
+    }
+
+    private BigInteger getLegacyCollateral(String symbol, boolean readOnly) {
+        BigInteger amount = collateral.at(dbKey).getOrDefault(symbol, BigInteger.ZERO);
+        if (!symbol.equals(SICX_SYMBOL) || amount.signum() != 0 ||
+                dataMigrationStatus.at(dbKey).getOrDefault(SICX_SYMBOL, false)) {
+            return amount;
+        }
+
+        int lastSnapIndex = snaps.at(dbKey).size() - 1;
+        int lastSnap = snaps.at(dbKey).get(lastSnapIndex);
+        BigInteger collateralAmount = assets.at(dbKey).at(lastSnap).getOrDefault(SICX_SYMBOL, BigInteger.ZERO);
+        if (!readOnly) {
+            dataMigrationStatus.at(dbKey).set(SICX_SYMBOL, true);
+        }
+
+        return collateralAmount;
     }
 
     public void setDebt(String collateralSymbol, String assetSymbol, BigInteger value) {
-        BigInteger previousDebt = getDebt(collateralSymbol, assetSymbol);
-        BigInteger previousUserDebt = getTotalDebt(assetSymbol);
-        DictDB<String, BigInteger> totalPerCollateralDebts =
-                LoansVariables.totalPerCollateralDebts.at(collateralSymbol);
+        PositionRecord record = getRecord(collateralSymbol, false);
+        BigInteger debtChange = updateDebt(record, assetSymbol, value);
+        updateTotalDebt(collateralSymbol, assetSymbol, debtChange);
+        saveRecord(collateralSymbol, record);
 
-        BigInteger previousTotalDebt = LoansVariables.totalDebts.getOrDefault(assetSymbol, BigInteger.ZERO);
-        BigInteger previousTotalPerCollateralDebt = totalPerCollateralDebts.getOrDefault(assetSymbol, BigInteger.ZERO);
+        if (value == null) {
+            AssetDB.getAsset(assetSymbol).getBorrowers(collateralSymbol).remove(getId());
+        } else {
+            AssetDB.getAsset(assetSymbol).getBorrowers(collateralSymbol).set(getId(), value);
+        }
+
+        if (assetSymbol.equals(BNUSD_SYMBOL)) {
+            LiquidationIndex.updatePosition(collateralSymbol, getId(), record.getCollateral(), value);
+        }
+    }
+
+    // Used by rebalancing, which updates the borrower list while walking it and applies the change in total debt
+    // once for the whole batch. Debt and collateral are written as a single record.
+    public BigInteger rebalance(String collateralSymbol, String assetSymbol, BigInteger debt, BigInteger collateral) {
+        PositionRecord record = getRecord(collateralSymbol, false);
+        BigInteger debtChange = updateDebt(record, assetSymbol, debt);
+        CollateralDB.updateTotalDeposits(collateralSymbol, collateral.subtract(record.getCollateral()));
+        record.setCollateral(collateral);
+        saveRecord(collateralSymbol, record);
+
+        if (assetSymbol.equals(BNUSD_SYMBOL)) {
+            LiquidationIndex.updatePosition(collateralSymbol, getId(), collateral, debt);
+        }
+
+        return debtChange;
+    }
+
+    private BigInteger updateDebt(PositionRecord record, String assetSymbol, BigInteger value) {
+        BigInteger previousDebt = record.getDebt(assetSymbol);
+        BigInteger previousUserDebt = getTotalDebt(assetSymbol);
         BigInteger currentValue = BigInteger.ZERO;
         if (value != null) {
             currentValue = value;
         }
 
         BigInteger debtChange = currentValue.subtract(previousDebt);
+        record.setDebt(assetSymbol, value);
+        setPositionTotalDebt(assetSymbol, previousUserDebt.add(debtChange));
+
+        return debtChange;
+    }
+
+    public static void updateTotalDebt(String collateralSymbol, String assetSymbol, BigInteger debtChange) {
+        DictDB<String, BigInteger> totalPerCollateralDebts =
+                LoansVariables.totalPerCollateralDebts.at(collateralSymbol);
+
+        BigInteger previousTotalDebt = LoansVariables.totalDebts.getOrDefault(assetSymbol, BigInteger.ZERO);
+        BigInteger previousTotalPerCollateralDebt = totalPerCollateralDebts.getOrDefault(assetSymbol, BigInteger.ZERO);
         BigInteger newTotalDebt = previousTotalDebt.add(debtChange);
         BigInteger newTotalPerCollateralDebt = previousTotalPerCollateralDebt.add(debtChange);
 
@@ -165,14 +277,6 @@ public class Position {
 
         LoansVariables.totalDebts.set(assetSymbol, newTotalDebt);
         totalPerCollateralDebts.set(assetSymbol, newTotalPerCollateralDebt);
-        setLoansPosition(collateralSymbol, assetSymbol, value);
-        setPositionTotalDebt(assetSymbol, previousUserDebt.add(debtChange));
-
-        if (value == null) {
-            AssetDB.getAsset(assetSymbol).getBorrowers(collateralSymbol).remove(getId());
-        } else {
-            AssetDB.getAsset(assetSymbol).getBorrowers(collateralSymbol).set(getId(), currentValue);
-        }
     }
 
     public boolean hasDebt() {
@@ -188,10 +292,14 @@ public class Position {
     }
 
     public BigInteger totalCollateralInLoop(String collateralSymbol, boolean readOnly) {
+        return totalCollateralInLoop(collateralSymbol, readOnly, new TokenCache());
+    }
+
+    public BigInteger totalCollateralInLoop(String collateralSymbol, boolean readOnly, TokenCache tokenCache) {
         Collateral collateral = CollateralDB.getCollateral(collateralSymbol);
 
         Address collateralAddress = collateral.getAssetAddress();
-        Token collateralContract = new Token(collateralAddress);
+        Token collateralContract = new Token(collateralAddress, tokenCache);
 
         BigInteger amount = getCollateral(collateralSymbol, readOnly);
         BigInteger decimals = pow(BigInteger.TEN, collateralContract.decimals().intValue());
@@ -207,6 +315,10 @@ public class Position {
     }
 
     public BigInteger totalDebtInLoop(String collateralSymbol, boolean readOnly) {
+        return totalDebtInLoop(collateralSymbol, readOnly, new TokenCache());
+    }
+
+    public BigInteger totalDebtInLoop(String collateralSymbol, boolean readOnly, TokenCache tokenCache) {
         BigInteger totalDebt = BigInteger.ZERO;
         int assetsCount = AssetDB.assetList.size();
         for (int i = 0; i < assetsCount; i++) {
@@ -215,11 +327,11 @@ public class Position {
                 continue;
             }
 
-            BigInteger amount = getDebt(collateralSymbol, assetSymbol);
+            BigInteger amount = getDebt(collateralSymbol, assetSymbol, readOnly);
 
             BigInteger price = BigInteger.ZERO;
             if (amount.compareTo(BigInteger.ZERO) > 0) {
-                price = getAssetPrice(assetSymbol, readOnly);
+                price = getAssetPrice(assetSymbol, readOnly, tokenCache);
             }
 
             totalDebt = totalDebt.add(amount.multiply(price).divide(EXA));
@@ -229,9 +341,13 @@ public class Position {
     }
 
     public Standing getStanding(String collateralSymbol, Boolean readOnly) {
+        return getStanding(collateralSymbol, readOnly, new TokenCache());
+    }
+
+    public Standing getStanding(String collateralSymbol, Boolean readOnly, TokenCache tokenCache) {
         Standing standing = new Standing();
-        standing.totalDebt = totalDebtInLoop(collateralSymbol, readOnly);
-        standing.collateral = totalCollateralInLoop(collateralSymbol, readOnly);
+        standing.totalDebt = totalDebtInLoop(collateralSymbol, readOnly, tokenCache);
+        standing.collateral = totalCollateralInLoop(collateralSymbol, readOnly, tokenCache);
 
         if (standing.totalDebt.equals(BigInteger.ZERO)) {
             standing.ratio = BigInteger.ZERO;
@@ -270,6 +386,7 @@ public class Position {
 
         Map<String, Map<String, BigInteger>> holdings = new HashMap<>();
         Map<String, Map<String, Object>> standings = new HashMap<>();
+        TokenCache tokenCache = new TokenCache();
         int assetSymbolsCount = AssetDB.assetList.size();
         int collateralSymbolsCount = CollateralDB.collateralList.size();
         for (int i = 0; i < collateralSymbolsCount; i++) {
@@ -288,7 +405,7 @@ public class Position {
                     continue;
                 }
 
-                BigInteger amount = getDebt(collateralSymbol, assetSymbol);
+                BigInteger amount = getDebt(collateralSymbol, assetSymbol, true);
                 collateralAmounts.put(assetSymbol, amount);
             }
 
@@ -297,7 +414,7 @@ public class Position {
             collateralAmounts.put(collateralSymbol, amount);
             holdings.put(collateralSymbol, collateralAmounts);
 
-            Standing standing = getStanding(collateralSymbol, true);
+            Standing standing = getStanding(collateralSymbol, true, tokenCache);
             Map<String, Object> standingMap = new HashMap<>();
             standingMap.put("total_debt", standing.totalDebt);
             standingMap.put("collateral", standing.collateral);
@@ -309,7 +426,7 @@ public class Position {
 
         Map<String, Object> positionDetails = new HashMap<>();
 
-        Standing sICXstanding = getStanding(SICX_SYMBOL, true);
+        Standing sICXstanding = getStanding(SICX_SYMBOL, true, tokenCache);
         positionDetails.put("pos_id", getId());
         positionDetails.put("created", getCreated());
         positionDetails.put("address", getAddress().toString());
@@ -324,10 +441,10 @@ public class Position {
         return positionDetails;
     }
 
-    private BigInteger getAssetPrice(String symbol, Boolean readOnly) {
+    private BigInteger getAssetPrice(String symbol, Boolean readOnly, TokenCache tokenCache) {
         Asset asset = AssetDB.getAsset(symbol);
         Address assetAddress = asset.getAssetAddress();
-        Token assetContract = new Token(assetAddress);
+        Token assetContract = new Token(assetAddress, tokenCache);
         if (readOnly) {
             return assetContract.lastPriceInLoop();
         } else {
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.core.loans.positions;
+
+import score.ObjectReader;
+import score.ObjectWriter;
+import scorex.util.HashMap;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+// Collateral amount and debt per asset of one position for one collateral type, stored as a single entry.
+public class PositionRecord {
+    BigInteger collateral;
+    final Map<String, BigInteger> debts;
+
+    PositionRecord() {
+        collateral = BigInteger.ZERO;
+        debts = new HashMap<>();
+    }
+
+    BigInteger getCollateral() {
+        return collateral;
+    }
+
+    void setCollateral(BigInteger value) {
+        collateral = value == null ? BigInteger.ZERO : value;
+    }
+
+    BigInteger getDebt(String assetSymbol) {
+        BigInteger debt = debts.get(assetSymbol);
+        return debt == null ? BigInteger.ZERO : debt;
+    }
+
+    void setDebt(String assetSymbol, BigInteger value) {
+        if (value == null || value.signum() == 0) {
+            debts.remove(assetSymbol);
+        } else {
+            debts.put(assetSymbol, value);
+        }
+    }
+
+    public static void writeObject(ObjectWriter writer, PositionRecord obj) {
+        writer.beginList(2);
+        writer.write(obj.collateral);
+        writer.beginList(obj.debts.size());
+        for (Map.Entry<String, BigInteger> debt : obj.debts.entrySet()) {
+            writer.beginList(2);
+            writer.write(debt.getKey());
+            writer.write(debt.getValue());
+            writer.end();
+        }
+        writer.end();
+        writer.end();
+    }
+
+    public static PositionRecord readObject(ObjectReader reader) {
+        PositionRecord obj = new PositionRecord();
+        reader.beginList();
+        obj.collateral = reader.readBigInteger();
+        reader.beginList();
+        while (reader.hasNext()) {
+            reader.beginList();
+            String assetSymbol = reader.readString();
+            BigInteger debt = reader.readBigInteger();
+            reader.end();
+            obj.debts.put(assetSymbol, debt);
+        }
+        reader.end();
+        reader.end();
+        return obj;
+    }
+}
@@ -36,6 +36,8 @@ public class LoansConstants extends Constants {
 
     public static final int MAX_DEBTS_LIST_LENGTH = 400;
     public static final int REDEEM_BATCH_SIZE = 50;
+    public static final int MAX_LIQUIDATION_CANDIDATES = 100;
+    public static final int MAX_BORROWERS_PAGE_SIZE = 100;
 
     public static final String SICX_SYMBOL = "sICX";
     public static final String BNUSD_SYMBOL = "bnUSD";
@@ -17,10 +17,11 @@
 package network.balanced.score.core.loans.utils;
 
 import java.math.BigInteger;
-import java.util.Map;
 
 public class PositionBatch {
     public BigInteger totalDebt;
     public int size;
-    public Map<Integer, BigInteger> positions;
+    public int[] ids;
+    public BigInteger[] debts;
+    public int nextId;
 }
\ No newline at end of file
@@ -26,17 +26,35 @@ import static network.balanced.score.core.loans.LoansImpl.call;
 public class Token {
 
     private final Address tokenAddress;
+    private final TokenCache cache;
 
     public Token(Address tokenAddress) {
+        this(tokenAddress, new TokenCache());
+    }
+
+    public Token(Address tokenAddress, TokenCache cache) {
         this.tokenAddress = tokenAddress;
+        this.cache = cache;
     }
 
     public String symbol() {
-        return (String) call(tokenAddress, "symbol");
+        String symbol = cache.getSymbol(tokenAddress);
+        if (symbol == null) {
+            symbol = (String) call(tokenAddress, "symbol");
+            cache.setSymbol(tokenAddress, symbol);
+        }
+
+        return symbol;
     }
 
     public BigInteger decimals() {
-        return (BigInteger) call(tokenAddress, "decimals");
+        BigInteger decimals = cache.getDecimals(tokenAddress);
+        if (decimals == null) {
+            decimals = (BigInteger) call(tokenAddress, "decimals");
+            cache.setDecimals(tokenAddress, decimals);
+        }
+
+        return decimals;
     }
 
     public BigInteger totalSupply() {
@@ -52,11 +70,25 @@ public class Token {
     }
 
     public BigInteger priceInLoop() {
-        return (BigInteger) call(LoansVariables.oracle.get(), "getPriceInLoop", symbol());
+        String symbol = symbol();
+        BigInteger price = cache.getPriceInLoop(symbol);
+        if (price == null) {
+            price = (BigInteger) call(LoansVariables.oracle.get(), "getPriceInLoop", symbol);
+            cache.setPriceInLoop(symbol, price);
+        }
+
+        return price;
     }
 
     public BigInteger lastPriceInLoop() {
-        return (BigInteger) call(LoansVariables.oracle.get(), "getLastPriceInLoop", symbol());
+        String symbol = symbol();
+        BigInteger price = cache.getLastPriceInLoop(symbol);
+        if (price == null) {
+            price = (BigInteger) call(LoansVariables.oracle.get(), "getLastPriceInLoop", symbol);
+            cache.setLastPriceInLoop(symbol, price);
+        }
+
+        return price;
     }
 
     public void mintTo(Address to, BigInteger amount) {
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.core.loans.utils;
+
+import score.Address;
+import score.Context;
+import score.DictDB;
+import scorex.util.HashMap;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Token metadata and oracle prices looked up during a single external call. Create one per call and pass it to
+ * every {@link Token} that is used in a loop, so each symbol and price is only fetched once.
+ */
+public class TokenCache {
+    private static final String TOKEN_SYMBOLS = "token_cache_symbols";
+    private static final String TOKEN_DECIMALS = "token_cache_decimals";
+
+    // symbol and decimals never change for a token, so they are stored on first use
+    private static final DictDB<Address, String> symbols = Context.newDictDB(TOKEN_SYMBOLS, String.class);
+    private static final DictDB<Address, BigInteger> decimals = Context.newDictDB(TOKEN_DECIMALS, BigInteger.class);
+
+    private final boolean readOnly;
+    private final Map<Address, String> loadedSymbols = new HashMap<>();
+    private final Map<Address, BigInteger> loadedDecimals = new HashMap<>();
+    private final Map<String, BigInteger> prices = new HashMap<>();
+    private final Map<String, BigInteger> lastPrices = new HashMap<>();
+
+    public TokenCache() {
+        readOnly = Context.getTransactionHash() == null;
+    }
+
+    public String getSymbol(Address token) {
+        String symbol = loadedSymbols.get(token);
+        if (symbol == null) {
+            symbol = symbols.get(token);
+            if (symbol != null) {
+                loadedSymbols.put(token, symbol);
+            }
+        }
+
+        return symbol;
+    }
+
+    public void setSymbol(Address token, String symbol) {
+        loadedSymbols.put(token, symbol);
+        if (!readOnly) {
+            symbols.set(token, symbol);
+        }
+    }
+
+    public BigInteger getDecimals(Address token) {
+        BigInteger tokenDecimals = loadedDecimals.get(token);
+        if (tokenDecimals == null) {
+            tokenDecimals = decimals.get(token);
+            if (tokenDecimals != null) {
+                loadedDecimals.put(token, tokenDecimals);
+            }
+        }
+
+        return tokenDecimals;
+    }
+
+    public void setDecimals(Address token, BigInteger tokenDecimals) {
+        loadedDecimals.put(token, tokenDecimals);
+        if (!readOnly) {
+            decimals.set(token, tokenDecimals);
+        }
+    }
+
+    public BigInteger getPriceInLoop(String symbol) {
+        return prices.get(symbol);
+    }
+
+    public void setPriceInLoop(String symbol, BigInteger price) {
+        if (price != null) {
+            prices.put(symbol, price);
+        }
+    }
+
+    public BigInteger getLastPriceInLoop(String symbol) {
+        return lastPrices.get(symbol);
+    }
+
+    public void setLastPriceInLoop(String symbol, BigInteger price) {
+        if (price != null) {
+            lastPrices.put(symbol, price);
+        }
+    }
+}
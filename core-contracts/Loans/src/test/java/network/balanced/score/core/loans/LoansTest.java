@@ -18,17 +18,26 @@ package network.balanced.score.core.loans;
 
 import com.eclipsesource.json.JsonObject;
 import com.iconloop.score.test.Account;
+import network.balanced.score.core.loans.positions.LiquidationIndex;
+import network.balanced.score.core.loans.positions.PositionsDB;
 import network.balanced.score.core.loans.utils.LoansConstants.Standings;
 import network.balanced.score.lib.interfaces.tokens.IRC2;
 import network.balanced.score.lib.interfaces.tokens.IRC2ScoreInterface;
 import network.balanced.score.lib.structs.RewardsDataEntry;
 import network.balanced.score.lib.test.mock.MockContract;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import score.Address;
+import score.ArrayDB;
+import score.BranchDB;
+import score.Context;
+import score.DictDB;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 import static network.balanced.score.core.loans.utils.LoansConstants.LOCKING_RATIO;
@@ -962,6 +971,47 @@ class LoansTest extends LoansTestBase {
                 loan.add(expectedFee).subtract(expectedBnusdRepaidForiETH), "iETH");
     }
 
+    @Test
+    void sellCollateral_swapData() {
+        // Arrange
+        Account account = accounts.get(0);
+        BigInteger collateral = BigInteger.valueOf(2000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+        BigInteger collateralToSell = BigInteger.valueOf(100).multiply(EXA);
+        BigInteger iETHCollateralToSell = BigInteger.valueOf(80).multiply(EXA);
+        BigInteger minimumReceive = BigInteger.valueOf(80).multiply(EXA);
+
+        takeLoanICX(account, "bnUSD", collateral, loan);
+        takeLoaniETH(account, collateral, loan);
+
+        BigInteger rate = EXA.divide(BigInteger.TWO);
+        mockSicxBnusdPrice(rate);
+        mockiETHBnusdPrice(rate);
+        mockSwap(bnusd, collateralToSell, collateralToSell.multiply(BigInteger.TWO));
+        mockSwap(bnusd, iETHCollateralToSell, iETHCollateralToSell);
+
+        // Act
+        assertFalse((boolean) loans.call("isCompactSwapData"));
+        loans.invoke(account, "sellCollateral", collateralToSell, "sICX", minimumReceive);
+
+        loans.invoke(admin, "setCompactSwapData", true);
+        assertTrue((boolean) loans.call("isCompactSwapData"));
+        loans.invoke(account, "sellCollateral", iETHCollateralToSell, "iETH", minimumReceive);
+
+        // Assert
+        JsonObject swapParams = new JsonObject()
+                .add("toToken", bnusd.getAddress().toString())
+                .add("minimumReceive", minimumReceive.toString());
+        byte[] jsonData = new JsonObject()
+                .add("method", "_swap")
+                .add("params", swapParams)
+                .toString().getBytes();
+        verify(dex.mock).tokenFallback(loans.getAddress(), collateralToSell, jsonData);
+
+        byte[] compactData = TokenFallbackData.encodeSwap(bnusd.getAddress(), null, minimumReceive, null);
+        verify(dex.mock).tokenFallback(loans.getAddress(), iETHCollateralToSell, compactData);
+    }
+
     @Test
     void sellCollateral_ZeroCollateral() {
         // Arrange
@@ -1109,6 +1159,34 @@ class LoansTest extends LoansTestBase {
         verifyTotalDebt(loan.add(expectedFee).add(loan.add(expectedFee)));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void getCollateralTotals() {
+        // Arrange
+        Account accountZero = accounts.get(0);
+        Account accountOne = accounts.get(1);
+        BigInteger collateral = BigInteger.valueOf(2000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+        BigInteger collateralToWithdraw = BigInteger.valueOf(100).multiply(EXA);
+        BigInteger debt = loan.add(calculateFee(loan));
+
+        // Act
+        takeLoanICX(accountZero, "bnUSD", collateral, loan);
+        takeLoanICX(accountOne, "bnUSD", collateral, loan);
+        takeLoaniETH(accountZero, collateral, loan);
+        loans.invoke(accountOne, "withdrawCollateral", collateralToWithdraw, "sICX");
+
+        // Assert
+        Map<String, Object> sICXTotals = (Map<String, Object>) loans.call("getCollateralTotals", "sICX");
+        assertEquals(collateral.multiply(BigInteger.TWO).subtract(collateralToWithdraw), sICXTotals.get(
+                "collateral"));
+        assertEquals(debt.multiply(BigInteger.TWO), ((Map<String, BigInteger>) sICXTotals.get("debt")).get("bnUSD"));
+
+        Map<String, Object> iETHTotals = (Map<String, Object>) loans.call("getCollateralTotals", "iETH");
+        assertEquals(collateral, iETHTotals.get("collateral"));
+        assertEquals(debt, ((Map<String, BigInteger>) iETHTotals.get("debt")).get("bnUSD"));
+    }
+
     @Test
     void withdrawCollateral_ZeroCollateral() {
         // Arrange
@@ -1260,6 +1338,360 @@ class LoansTest extends LoansTestBase {
         verifyTotalDebt(originalTotalDebt);
     }
 
+    @Test
+    void liquidate_pricesFetchedOncePerTransaction() {
+        // Arrange
+        Account account = accounts.get(0);
+        Account liquidator = accounts.get(1);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+
+        takeLoanICX(account, "bnUSD", collateral, loan);
+        BigInteger newPrice = BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(4));
+        mockOraclePrice("bnUSD", newPrice);
+        clearInvocations(balancedOracle.mock);
+
+        // Act
+        loans.invoke(liquidator, "liquidate", account.getAddress(), "sICX");
+
+        // Assert
+        verify(balancedOracle.mock, times(1)).getPriceInLoop("bnUSD");
+        verify(balancedOracle.mock, times(1)).getPriceInLoop("sICX");
+        verifyPosition(account.getAddress(), BigInteger.ZERO, BigInteger.ZERO);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void liquidateBatch() {
+        // Arrange
+        Account account1 = accounts.get(0);
+        Account account2 = accounts.get(1);
+        Account accountWithoutPosition = accounts.get(2);
+        Account liquidator = accounts.get(3);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+        BigInteger expectedFee = calculateFee(loan);
+        BigInteger originalTotalDebt = getTotalDebt();
+
+        BigInteger liquidationReward = (BigInteger) getParam("liquidation reward");
+        BigInteger expectedReward = collateral.multiply(liquidationReward).divide(POINTS);
+        BigInteger liquidatorBalancePre = (BigInteger) sicx.call("balanceOf", liquidator.getAddress());
+
+        takeLoanICX(account1, "bnUSD", collateral, loan);
+        takeLoanICX(account2, "bnUSD", collateral, loan);
+        BigInteger debtBeforeLiquidation = getTotalDebt();
+
+        BigInteger newPrice = BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(4));
+        mockOraclePrice("bnUSD", newPrice);
+
+        // Act
+        Address[] owners = new Address[]{account1.getAddress(), accountWithoutPosition.getAddress(),
+                account2.getAddress(), account1.getAddress()};
+        loans.invoke(liquidator, "liquidateBatch", owners, "sICX");
+
+        // Assert
+        BigInteger liquidatorBalancePost = (BigInteger) sicx.call("balanceOf", liquidator.getAddress());
+        assertEquals(liquidatorBalancePre.add(expectedReward.multiply(BigInteger.TWO)), liquidatorBalancePost);
+        verifyPosition(account1.getAddress(), BigInteger.ZERO, BigInteger.ZERO);
+        verifyPosition(account2.getAddress(), BigInteger.ZERO, BigInteger.ZERO);
+
+        Map<String, Object> bnusdAsset = ((Map<String, Map<String, Object>>) loans.call("getAvailableAssets")).get(
+                "bnUSD");
+        Map<String, Map<String, Object>> bnusdDebtDetails = (Map<String, Map<String, Object>>) bnusdAsset.get(
+                "debt_details");
+        BigInteger expectedBadDebt = loan.add(expectedFee).multiply(BigInteger.TWO);
+        BigInteger expectedLiquidationPool = collateral.subtract(expectedReward).multiply(BigInteger.TWO);
+        assertEquals(expectedBadDebt, bnusdDebtDetails.get("sICX").get("bad_debt"));
+        assertEquals(expectedLiquidationPool, bnusdDebtDetails.get("sICX").get("liquidation_pool"));
+
+        RewardsDataEntry entry1 = new RewardsDataEntry();
+        entry1._user = account1.getAddress();
+        entry1._balance = loan.add(expectedFee);
+        RewardsDataEntry entry2 = new RewardsDataEntry();
+        entry2._user = account2.getAddress();
+        entry2._balance = loan.add(expectedFee);
+        verify(rewards.mock).updateBatchRewardsData(eq("Loans"), eq(debtBeforeLiquidation),
+                argThat(data -> data.length == 2 && compareRewardsData(new RewardsDataEntry[]{entry1, entry2},
+                        data)));
+        verifyTotalDebt(originalTotalDebt);
+    }
+
+    @Test
+    void liquidateBatch_pricesFetchedOncePerCall() {
+        // Arrange
+        Account account1 = accounts.get(0);
+        Account account2 = accounts.get(1);
+        Account liquidator = accounts.get(2);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+
+        takeLoanICX(account1, "bnUSD", collateral, loan);
+        takeLoanICX(account2, "bnUSD", collateral, loan);
+        BigInteger newPrice = BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(4));
+        mockOraclePrice("bnUSD", newPrice);
+        clearInvocations(balancedOracle.mock);
+
+        // Act
+        Address[] owners = new Address[]{account1.getAddress(), account2.getAddress()};
+        loans.invoke(liquidator, "liquidateBatch", owners, "sICX");
+
+        // Assert
+        verify(balancedOracle.mock, times(1)).getPriceInLoop("bnUSD");
+        verify(balancedOracle.mock, times(1)).getPriceInLoop("sICX");
+        verifyPosition(account1.getAddress(), BigInteger.ZERO, BigInteger.ZERO);
+        verifyPosition(account2.getAddress(), BigInteger.ZERO, BigInteger.ZERO);
+    }
+
+    @Test
+    void liquidateBatch_NoLiquidatablePositions() {
+        // Arrange
+        Account account = accounts.get(0);
+        Account liquidator = accounts.get(1);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+        BigInteger expectedFee = calculateFee(loan);
+        takeLoanICX(account, "bnUSD", collateral, loan);
+
+        // Act
+        loans.invoke(liquidator, "liquidateBatch", new Address[]{account.getAddress()}, "sICX");
+
+        // Assert
+        verifyPosition(account.getAddress(), collateral, loan.add(expectedFee));
+        verify(rewards.mock, never()).updateBatchRewardsData(eq("Loans"), any(BigInteger.class),
+                any(RewardsDataEntry[].class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getLiquidationCandidates() {
+        // Arrange
+        Account lowRatioAccount = accounts.get(0);
+        Account highRatioAccount = accounts.get(1);
+        Account liquidator = accounts.get(2);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+
+        takeLoanICX(lowRatioAccount, "bnUSD", BigInteger.valueOf(1000).multiply(EXA), loan);
+        takeLoanICX(highRatioAccount, "bnUSD", BigInteger.valueOf(2000).multiply(EXA), loan);
+
+        // Act
+        List<Map<String, Object>> noCandidates = (List<Map<String, Object>>) loans.call("getLiquidationCandidates",
+                "sICX", EXA, 10);
+        List<Map<String, Object>> oneCandidate = (List<Map<String, Object>>) loans.call("getLiquidationCandidates",
+                "sICX", EXA.divide(BigInteger.valueOf(4)), 10);
+        List<Map<String, Object>> allCandidates = (List<Map<String, Object>>) loans.call("getLiquidationCandidates",
+                "sICX", EXA.divide(BigInteger.TEN), 10);
+        List<Map<String, Object>> limitedCandidates = (List<Map<String, Object>>) loans.call(
+                "getLiquidationCandidates", "sICX", EXA.divide(BigInteger.TEN), 1);
+
+        // Assert
+        assertEquals(0, noCandidates.size());
+        assertEquals(1, oneCandidate.size());
+        assertEquals(lowRatioAccount.getAddress(), oneCandidate.get(0).get("address"));
+        assertEquals(2, allCandidates.size());
+        assertEquals(1, limitedCandidates.size());
+        assertEquals(lowRatioAccount.getAddress(), limitedCandidates.get(0).get("address"));
+
+        mockOraclePrice("bnUSD", BigInteger.TEN.pow(18).multiply(BigInteger.valueOf(4)));
+        loans.invoke(liquidator, "liquidate", lowRatioAccount.getAddress(), "sICX");
+        allCandidates = (List<Map<String, Object>>) loans.call("getLiquidationCandidates", "sICX",
+                EXA.divide(BigInteger.TEN), 10);
+        assertEquals(1, allCandidates.size());
+        assertEquals(highRatioAccount.getAddress(), allCandidates.get(0).get("address"));
+    }
+
+    @Test
+    void legacyPosition_migratedOnWrite() {
+        // Arrange
+        Account account = accounts.get(0);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+        BigInteger debt = loan.add(calculateFee(loan));
+        BigInteger withdrawal = BigInteger.valueOf(100).multiply(EXA);
+        takeLoanICX(account, "bnUSD", collateral, loan);
+        runInLoans(() -> writeLegacyPosition(account.getAddress(), "sICX", collateral, debt));
+
+        // Act & Assert
+        verifyPosition(account.getAddress(), collateral, debt);
+        runInLoans(() -> {
+            String dbKey = getPositionDbKey(account.getAddress());
+            assertNull(getPositionRecords().at(dbKey).get("sICX"));
+            assertEquals(collateral, getLegacyCollateral().at(dbKey).get("sICX"));
+            assertEquals(debt, getLegacyDebt().at(dbKey).at("sICX").get("bnUSD"));
+        });
+
+        loans.invoke(account, "withdrawCollateral", withdrawal, "sICX");
+        verifyPosition(account.getAddress(), collateral.subtract(withdrawal), debt);
+        runInLoans(() -> {
+            String dbKey = getPositionDbKey(account.getAddress());
+            assertNotNull(getPositionRecords().at(dbKey).get("sICX"));
+            assertNull(getLegacyCollateral().at(dbKey).get("sICX"));
+            assertNull(getLegacyDebt().at(dbKey).at("sICX").get("bnUSD"));
+        });
+    }
+
+    @Test
+    void legacyPosition_sICXSnapshot() {
+        // Arrange
+        Account account = accounts.get(0);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(200).multiply(EXA);
+        BigInteger debt = loan.add(calculateFee(loan));
+        BigInteger withdrawal = BigInteger.valueOf(100).multiply(EXA);
+        int snapshotId = 1;
+        takeLoanICX(account, "bnUSD", collateral, loan);
+
+        // collateral from before the per-asset layout is only held in the last snapshot
+        runInLoans(() -> {
+            String dbKey = getPositionDbKey(account.getAddress());
+            writeLegacyPosition(account.getAddress(), "sICX", BigInteger.ZERO, debt);
+            BranchDB<String, ArrayDB<Integer>> snaps = Context.newBranchDB("snaps", Integer.class);
+            BranchDB<String, BranchDB<Integer, DictDB<String, BigInteger>>> assets = Context.newBranchDB("assets",
+                    BigInteger.class);
+            snaps.at(dbKey).add(snapshotId);
+            assets.at(dbKey).at(snapshotId).set("sICX", collateral);
+            getDataMigrationStatus().at(dbKey).set("sICX", false);
+        });
+
+        // Act & Assert
+        verifyPosition(account.getAddress(), collateral, debt);
+        runInLoans(() -> {
+            String dbKey = getPositionDbKey(account.getAddress());
+            assertNull(getPositionRecords().at(dbKey).get("sICX"));
+            assertFalse(getDataMigrationStatus().at(dbKey).get("sICX"));
+        });
+
+        loans.invoke(account, "withdrawCollateral", withdrawal, "sICX");
+        verifyPosition(account.getAddress(), collateral.subtract(withdrawal), debt);
+        runInLoans(() -> {
+            String dbKey = getPositionDbKey(account.getAddress());
+            assertNotNull(getPositionRecords().at(dbKey).get("sICX"));
+            assertTrue(getDataMigrationStatus().at(dbKey).get("sICX"));
+            assertNull(getLegacyDebt().at(dbKey).at("sICX").get("bnUSD"));
+        });
+    }
+
+    @Test
+    void legacyPosition_emptyRecordStored() {
+        // Arrange
+        Account account = accounts.get(0);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        takeLoanICX(account, "bnUSD", collateral, BigInteger.ZERO);
+
+        // Act & Assert
+        runInLoans(() -> {
+            String dbKey = getPositionDbKey(account.getAddress());
+            assertNull(getPositionRecords().at(dbKey).get("iETH"));
+            PositionsDB.getPosition(account.getAddress()).getCollateral("iETH");
+            assertNotNull(getPositionRecords().at(dbKey).get("iETH"));
+
+            // later reads use the stored record instead of the old layout
+            getLegacyCollateral().at(dbKey).set("iETH", collateral);
+            assertEquals(BigInteger.ZERO, PositionsDB.getPosition(account.getAddress()).getCollateral("iETH"));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getLiquidationCandidates_backfill() {
+        // Arrange
+        Account firstAccount = accounts.get(0);
+        Account secondAccount = accounts.get(1);
+        BigInteger collateral = BigInteger.valueOf(1000).multiply(EXA);
+        BigInteger debt = BigInteger.valueOf(200).multiply(EXA);
+        takeLoanICX(firstAccount, "bnUSD", collateral, BigInteger.ZERO);
+        takeLoanICX(secondAccount, "bnUSD", collateral, BigInteger.ZERO);
+
+        // positions written before the index existed, followed by the contract update
+        runInLoans(() -> {
+            writeLegacyPosition(firstAccount.getAddress(), "sICX", collateral, debt);
+            writeLegacyPosition(secondAccount.getAddress(), "sICX", collateral, debt);
+            Context.newVarDB("liquidation_backfill_end", Integer.class).set(null);
+            LiquidationIndex.initializeBackfill();
+        });
+
+        Executable getCandidates = () -> loans.call("getLiquidationCandidates", "sICX", EXA.divide(BigInteger.TEN),
+                10);
+        expectErrorMessage(getCandidates, TAG + "Liquidation index backfill is not complete");
+        assertFalse((Boolean) loans.call("isLiquidationIndexBackfilled"));
+
+        // Act
+        loans.invoke(admin, "backfillLiquidationIndex", 1);
+        assertFalse((Boolean) loans.call("isLiquidationIndexBackfilled"));
+        loans.invoke(admin, "backfillLiquidationIndex", 1);
+
+        // Assert
+        assertTrue((Boolean) loans.call("isLiquidationIndexBackfilled"));
+        List<Map<String, Object>> candidates = (List<Map<String, Object>>) loans.call("getLiquidationCandidates",
+                "sICX", EXA.divide(BigInteger.TEN), 10);
+        assertEquals(2, candidates.size());
+        assertEquals(firstAccount.getAddress(), candidates.get(0).get("address"));
+        assertEquals(secondAccount.getAddress(), candidates.get(1).get("address"));
+
+        Executable backfillAgain = () -> loans.invoke(admin, "backfillLiquidationIndex", 1);
+        expectErrorMessage(backfillAgain, TAG + "Liquidation index is already backfilled");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getLiquidationCandidates_orderedByBucket() {
+        // Arrange
+        BigInteger loan = BigInteger.valueOf(100).multiply(EXA);
+        takeLoanICX(accounts.get(0), "bnUSD", BigInteger.valueOf(1100).multiply(EXA), loan);
+        takeLoanICX(accounts.get(1), "bnUSD", BigInteger.valueOf(1000).multiply(EXA), loan);
+        takeLoanICX(accounts.get(2), "bnUSD", BigInteger.valueOf(1050).multiply(EXA), loan);
+        takeLoanICX(accounts.get(3), "bnUSD", BigInteger.valueOf(4000).multiply(EXA), loan);
+
+        // Act
+        List<Map<String, Object>> candidates = (List<Map<String, Object>>) loans.call("getLiquidationCandidates",
+                "sICX", EXA.divide(BigInteger.valueOf(10)), 10);
+
+        // Assert
+        assertEquals(3, candidates.size());
+        assertEquals(accounts.get(1).getAddress(), candidates.get(0).get("address"));
+        assertEquals(accounts.get(2).getAddress(), candidates.get(1).get("address"));
+        assertEquals(accounts.get(0).getAddress(), candidates.get(2).get("address"));
+        BigInteger previousRatio = BigInteger.ZERO;
+        for (Map<String, Object> candidate : candidates) {
+            BigInteger ratio = (BigInteger) candidate.get("ratio");
+            assertTrue(ratio.compareTo(previousRatio) >= 0);
+            previousRatio = ratio;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void getLiquidationCandidates_filtersThresholdBucket() {
+        // Arrange
+        BigInteger loan = BigInteger.valueOf(100).multiply(EXA);
+        takeLoanICX(accounts.get(0), "bnUSD", BigInteger.valueOf(1030).multiply(EXA), loan);
+        takeLoanICX(accounts.get(1), "bnUSD", BigInteger.valueOf(1000).multiply(EXA), loan);
+
+        // Act, a threshold ratio of 10 which falls in the bucket of both positions
+        List<Map<String, Object>> candidates = (List<Map<String, Object>>) loans.call("getLiquidationCandidates",
+                "sICX", EXA.multiply(BigInteger.valueOf(3)).divide(BigInteger.valueOf(20)), 10);
+
+        // Assert
+        assertEquals(1, candidates.size());
+        assertEquals(accounts.get(1).getAddress(), candidates.get(0).get("address"));
+    }
+
+    @Test
+    void getLiquidationCandidates_otherAssetDebt() throws Exception {
+        // Arrange
+        MockContract<IRC2> iBTC = new MockContract<>(IRC2ScoreInterface.class, sm, admin);
+        when(iBTC.mock.symbol()).thenReturn("iBTC");
+        when(iBTC.mock.decimals()).thenReturn(BigInteger.valueOf(18));
+        loans.invoke(admin, "addAsset", iBTC.getAddress(), true, false);
+        mockOraclePrice("iBTC", EXA);
+        takeLoanICX(accounts.get(0), "iBTC", BigInteger.valueOf(1000).multiply(EXA),
+                BigInteger.valueOf(100).multiply(EXA));
+
+        // Act & Assert
+        Executable getCandidates = () -> loans.call("getLiquidationCandidates", "sICX", EXA, 10);
+        expectErrorMessage(getCandidates, TAG + "Liquidation index only covers bnUSD debt, iBTC is borrowed " +
+                "against sICX");
+    }
+
     @Test
     void liquidate_liquidationRatioNotSet() throws Exception {
         // Arrange
@@ -2053,6 +2485,114 @@ class LoansTest extends LoansTestBase {
                 accountTwoDebt.subtract(accountTwoExpectedDebtRepaid));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void getBorrowers_Paginated() {
+        // Arrange
+        BigInteger collateral = BigInteger.valueOf(10000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(1000).multiply(EXA);
+        takeLoanICX(accounts.get(0), "bnUSD", collateral, loan);
+        takeLoanICX(accounts.get(1), "bnUSD", collateral, loan);
+        takeLoanICX(accounts.get(2), "bnUSD", collateral, loan);
+        BigInteger debt = loan.add(calculateFee(loan));
+
+        // Act
+        Map<String, Object> firstPage = (Map<String, Object>) loans.call("getBorrowers", "sICX", "bnUSD", 0, 2);
+        Map<String, Object> secondPage = (Map<String, Object>) loans.call("getBorrowers", "sICX", "bnUSD",
+                firstPage.get("next"), 2);
+
+        // Assert
+        List<Map<String, Object>> firstBorrowers = (List<Map<String, Object>>) firstPage.get("borrowers");
+        assertEquals(2, firstBorrowers.size());
+        assertEquals(accounts.get(0).getAddress(), firstBorrowers.get(0).get("address"));
+        assertEquals(accounts.get(1).getAddress(), firstBorrowers.get(1).get("address"));
+        assertEquals(debt, firstBorrowers.get(0).get("debt"));
+
+        List<Map<String, Object>> secondBorrowers = (List<Map<String, Object>>) secondPage.get("borrowers");
+        assertEquals(1, secondBorrowers.size());
+        assertEquals(accounts.get(2).getAddress(), secondBorrowers.get(0).get("address"));
+        assertEquals(0, secondPage.get("next"));
+    }
+
+    @Test
+    void getBorrowers_UnknownSymbols() {
+        // Arrange
+        BigInteger collateral = BigInteger.valueOf(10000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(1000).multiply(EXA);
+        takeLoanICX(accounts.get(0), "bnUSD", collateral, loan);
+
+        // Assert & Act
+        Executable unknownCollateral = () -> loans.call("getBorrowers", "ICX", "bnUSD", 0, 2);
+        expectErrorMessage(unknownCollateral, "ICX is not a supported collateral type.");
+
+        Executable unknownAsset = () -> loans.call("getBorrowers", "sICX", "sICX", 0, 2);
+        expectErrorMessage(unknownAsset, "sICX is not a supported asset.");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void raisePrice_RotatesBorrowersBetweenBatches() {
+        // Arrange
+        loans.invoke(admin, "setRedeemBatchSize", 2);
+        BigInteger collateral = BigInteger.valueOf(10000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(1000).multiply(EXA);
+        takeLoanICX(accounts.get(0), "bnUSD", collateral, loan);
+        takeLoanICX(accounts.get(1), "bnUSD", collateral, loan);
+        takeLoanICX(accounts.get(2), "bnUSD", collateral, loan);
+
+        BigInteger rebalanceAmount = BigInteger.valueOf(10).multiply(EXA);
+        mockSicxBnusdPrice(EXA.divide(BigInteger.TWO));
+        mockSwap(bnusd, rebalanceAmount, rebalanceAmount.multiply(BigInteger.TWO));
+
+        Map<String, Object> accountTwoBefore = (Map<String, Object>) loans.call("getAccountPositions",
+                accounts.get(2).getAddress());
+
+        // Act
+        loans.invoke(rebalancing, "raisePrice", sicx.getAddress(), rebalanceAmount);
+        Map<String, Object> accountOneAfterFirstBatch = (Map<String, Object>) loans.call("getAccountPositions",
+                accounts.get(1).getAddress());
+        Map<String, Object> accountTwoAfterFirstBatch = (Map<String, Object>) loans.call("getAccountPositions",
+                accounts.get(2).getAddress());
+
+        loans.invoke(rebalancing, "raisePrice", sicx.getAddress(), rebalanceAmount);
+        Map<String, Object> accountOneAfterSecondBatch = (Map<String, Object>) loans.call("getAccountPositions",
+                accounts.get(1).getAddress());
+        Map<String, Object> accountTwoAfterSecondBatch = (Map<String, Object>) loans.call("getAccountPositions",
+                accounts.get(2).getAddress());
+
+        // Assert
+        assertEquals(accountTwoBefore.get("holdings"), accountTwoAfterFirstBatch.get("holdings"));
+        assertNotEquals(accountTwoAfterFirstBatch.get("holdings"), accountTwoAfterSecondBatch.get("holdings"));
+        assertEquals(accountOneAfterFirstBatch.get("holdings"), accountOneAfterSecondBatch.get("holdings"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void raisePrice_Throughput() {
+        // Arrange
+        loans.invoke(admin, "setRedeemBatchSize", 2);
+        BigInteger collateral = BigInteger.valueOf(10000).multiply(EXA);
+        BigInteger loan = BigInteger.valueOf(1000).multiply(EXA);
+        takeLoanICX(accounts.get(0), "bnUSD", collateral, loan);
+        takeLoanICX(accounts.get(1), "bnUSD", collateral, loan);
+        takeLoanICX(accounts.get(2), "bnUSD", collateral, loan);
+        BigInteger debt = loan.add(calculateFee(loan));
+
+        BigInteger rebalanceAmount = BigInteger.valueOf(10).multiply(EXA);
+        mockSicxBnusdPrice(EXA.divide(BigInteger.TWO));
+        mockSwap(bnusd, rebalanceAmount, rebalanceAmount.multiply(BigInteger.TWO));
+
+        // Act
+        loans.invoke(rebalancing, "raisePrice", sicx.getAddress(), rebalanceAmount);
+
+        // Assert
+        Map<String, Object> throughput = (Map<String, Object>) loans.call("getRebalanceThroughput");
+        assertEquals(2, throughput.get("batch_size"));
+        assertEquals(BigInteger.TWO, throughput.get("positions"));
+        assertEquals(debt.multiply(BigInteger.TWO), throughput.get("debt"));
+        verifyPosition(accounts.get(2).getAddress(), collateral, debt);
+    }
+
     @Test
     void lowerPrice() {
         // Arrange
@@ -23,6 +23,8 @@ import com.iconloop.score.test.ServiceManager;
 import network.balanced.score.core.loans.mocks.bnUSD.bnUSDMintBurn;
 import network.balanced.score.core.loans.mocks.iETH.iETHMintBurn;
 import network.balanced.score.core.loans.mocks.sICX.sICXMintBurn;
+import network.balanced.score.core.loans.positions.PositionRecord;
+import network.balanced.score.core.loans.positions.PositionsDB;
 import network.balanced.score.lib.interfaces.*;
 import network.balanced.score.lib.structs.RewardsDataEntry;
 import network.balanced.score.lib.test.UnitTest;
@@ -30,6 +32,9 @@ import network.balanced.score.lib.test.mock.MockContract;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
 import score.Address;
+import score.BranchDB;
+import score.Context;
+import score.DictDB;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -254,6 +259,46 @@ class LoansTestBase extends UnitTest {
         assertEquals(StandingsMap.get(standing), positionStanding.get("standing"));
     }
 
+    // Runs the action inside a Loans call, so it reads and writes the storage of the Loans contract
+    protected void runInLoans(Runnable action) {
+        Mockito.doAnswer((Answer<Void>) invocation -> {
+            action.run();
+            return null;
+        }).when(loansSpy).setMaxRetirePercent(Mockito.any(BigInteger.class));
+        loans.invoke(admin, "setMaxRetirePercent", BigInteger.ZERO);
+        Mockito.doCallRealMethod().when(loansSpy).setMaxRetirePercent(Mockito.any(BigInteger.class));
+    }
+
+    // Moves a position's record for one collateral back to the per-asset layout used before position records.
+    // Must be run inside runInLoans, like the storage getters below.
+    protected static void writeLegacyPosition(Address owner, String collateralSymbol, BigInteger collateral,
+                                              BigInteger debt) {
+        String dbKey = getPositionDbKey(owner);
+        getPositionRecords().at(dbKey).set(collateralSymbol, null);
+        getLegacyCollateral().at(dbKey).set(collateralSymbol, collateral.signum() == 0 ? null : collateral);
+        getLegacyDebt().at(dbKey).at(collateralSymbol).set("bnUSD", debt);
+    }
+
+    protected static String getPositionDbKey(Address owner) {
+        return "position|" + PositionsDB.getAddressIds(owner);
+    }
+
+    protected static BranchDB<String, DictDB<String, PositionRecord>> getPositionRecords() {
+        return Context.newBranchDB("position_records", PositionRecord.class);
+    }
+
+    protected static BranchDB<String, DictDB<String, BigInteger>> getLegacyCollateral() {
+        return Context.newBranchDB("collateral_balance", BigInteger.class);
+    }
+
+    protected static BranchDB<String, BranchDB<String, DictDB<String, BigInteger>>> getLegacyDebt() {
+        return Context.newBranchDB("loan_balance", BigInteger.class);
+    }
+
+    protected static BranchDB<String, DictDB<String, Boolean>> getDataMigrationStatus() {
+        return Context.newBranchDB("data_migration _status", Boolean.class);
+    }
+
     public void governanceCall(String method, Object... params) {
         loans.invoke(governance.account, method, params);
     }
@@ -29,6 +29,9 @@ public class Constants {
     public static final String GOVERNANCE_ADDRESS = "governance_address";
     public static final String ADMIN = "admin";
     public static final String PRICE_THRESHOLD = "_price_threshold";
+    public static final String REBALANCE_ROUNDS = "rebalance_rounds";
+
+    public static final int MAX_REBALANCE_ROUNDS = 10;
 
     public static final BigInteger SICX_BNUSD_POOL_ID = BigInteger.TWO;
 }
@@ -44,6 +44,7 @@ public class RebalancingImpl implements Rebalancing {
     public static final VarDB<Address> governance = Context.newVarDB(GOVERNANCE_ADDRESS, Address.class);
     public static final VarDB<Address> admin = Context.newVarDB(ADMIN, Address.class);
     private final VarDB<BigInteger> priceThreshold = Context.newVarDB(PRICE_THRESHOLD, BigInteger.class);
+    private final VarDB<Integer> rebalanceRounds = Context.newVarDB(REBALANCE_ROUNDS, Integer.class);
 
     public RebalancingImpl(Address _governance) {
         if (governance.getOrDefault(null) == null) {
@@ -152,6 +153,19 @@ public class RebalancingImpl implements Rebalancing {
         return priceThreshold.get();
     }
 
+    @External
+    public void setRebalanceRounds(int _value) {
+        only(governance);
+        Context.require(_value > 0 && _value <= MAX_REBALANCE_ROUNDS,
+                TAG + ": Rebalance rounds must be between 1 and " + MAX_REBALANCE_ROUNDS);
+        rebalanceRounds.set(_value);
+    }
+
+    @External(readonly = true)
+    public int getRebalanceRounds() {
+        return rebalanceRounds.getOrDefault(1);
+    }
+
     /**
      * Checks the Rebalancing status of the pool i.e. whether the difference between oracle price and dex pool price
      * are more than threshold or not. If it is more than the threshold then the function returns a list. If the
@@ -225,19 +239,29 @@ public class RebalancingImpl implements Rebalancing {
         return results;
     }
 
+    /**
+     * Rebalances the pool of the given collateral against bnUSD. Each round sends one batch of positions to Loans,
+     * where the batch holds the fixed number of positions set by its redeem batch size, and the rounds stop as soon
+     * as the pool price is back within the threshold.
+     */
     @External
     public void rebalance(@Optional Address collateralAddress) {
         collateralAddress = optionalDefault(collateralAddress, sicx.get());
         Address loansScore = loans.get();
         Context.require(loansScore != null);
-        List<Object> status = getRebalancingStatusFor(collateralAddress);
-        boolean forward = (boolean) status.get(0);
-        BigInteger tokenAmount = (BigInteger) status.get(1);
-        boolean reverse = (boolean) status.get(2);
-        if (forward && tokenAmount.signum() > 0) {
-            Context.call(loansScore, "raisePrice", collateralAddress, tokenAmount);
-        } else if (reverse && tokenAmount.signum() > 0) {
-            Context.call(loansScore, "lowerPrice", collateralAddress, tokenAmount.abs());
+        int rounds = rebalanceRounds.getOrDefault(1);
+        for (int i = 0; i < rounds; i++) {
+            List<Object> status = getRebalancingStatusFor(collateralAddress);
+            boolean forward = (boolean) status.get(0);
+            BigInteger tokenAmount = (BigInteger) status.get(1);
+            boolean reverse = (boolean) status.get(2);
+            if (forward && tokenAmount.signum() > 0) {
+                Context.call(loansScore, "raisePrice", collateralAddress, tokenAmount);
+            } else if (reverse && tokenAmount.signum() > 0) {
+                Context.call(loansScore, "lowerPrice", collateralAddress, tokenAmount.abs());
+            } else {
+                return;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -214,6 +214,22 @@ public class RebalancingTest extends TestBase {
 
         }
 
+        @ParameterizedTest
+        @MethodSource("network.balanced.score.core.rebalancing.RebalancingTest#provideDifferentThresholds")
+        void multipleRebalanceRounds(BigInteger threshold) {
+            rebalancingScore.invoke(governanceScore, "setPriceDiffThreshold", threshold);
+            rebalancingScore.invoke(governanceScore, "setRebalanceRounds", 3);
+            assertEquals(3, rebalancingScore.call("getRebalanceRounds"));
+            BigInteger additionalPrice = threshold.multiply(BigInteger.TWO).multiply(dexPriceOfBnusdInSicx).divide(ICX);
+            BigInteger bnUSDPriceInIcx = dexPriceOfBnusdInSicx.add(additionalPrice);
+            when(balancedOracle.mock.getLastPriceInLoop("USD")).thenReturn(bnUSDPriceInIcx);
+
+            // Pool stats are mocked, so the price stays out of range and every round sends a batch to Loans.
+            rebalancingScore.invoke(sm.createAccount(), "rebalance", sicx.getAddress());
+            verify(loans.mock, times(3)).raisePrice(any(Address.class), any(BigInteger.class));
+            verify(loans.mock, never()).lowerPrice(any(Address.class), any(BigInteger.class));
+        }
+
         @ParameterizedTest
         @MethodSource("network.balanced.score.core.rebalancing.RebalancingTest#provideDifferentThresholds")
         void priceLessThanThreshold(BigInteger threshold) {
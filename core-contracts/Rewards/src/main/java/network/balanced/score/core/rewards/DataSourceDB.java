@@ -16,16 +16,22 @@
 
 package network.balanced.score.core.rewards;
 
+import network.balanced.score.lib.utils.EnumerableSetDB;
 import score.Address;
 import score.ArrayDB;
 import score.Context;
+import score.DictDB;
 
 import static network.balanced.score.core.rewards.RewardsImpl.TAG;
 import static network.balanced.score.core.rewards.utils.RewardsConstants.DATASOURCE_DB_PREFIX;
+import static network.balanced.score.core.rewards.utils.RewardsConstants.USER_SOURCES_DB_PREFIX;
 import static network.balanced.score.lib.utils.DBHelpers.contains;
 
 public class DataSourceDB {
     public static final ArrayDB<String> names = Context.newArrayDB("names", String.class);
+    // Users whose active sources have all been added to their source index
+    private static final DictDB<Address, Boolean> userSourcesIndexed = Context.newDictDB("user_sources_indexed",
+            Boolean.class);
 
     private DataSourceDB() {
     }
@@ -42,6 +48,44 @@ public class DataSourceDB {
         return contains(names, name);
     }
 
+    public static EnumerableSetDB<String> getUserSources(Address user) {
+        return new EnumerableSetDB<>(USER_SOURCES_DB_PREFIX + "|" + user, String.class);
+    }
+
+    public static boolean isUserIndexed(Address user) {
+        return userSourcesIndexed.getOrDefault(user, false);
+    }
+
+    public static void setUserIndexed(Address user) {
+        userSourcesIndexed.set(user, true);
+    }
+
+    // Sources the user has a working balance in, null if the user has not been indexed yet
+    public static String[] getActiveSources(Address user) {
+        if (!isUserIndexed(user)) {
+            return null;
+        }
+
+        EnumerableSetDB<String> userSources = getUserSources(user);
+        int count = userSources.length();
+        String[] sources = new String[count];
+        int activeCount = 0;
+        for (int i = 0; i < count; i++) {
+            String name = userSources.at(i);
+            if (get(name).getContractAddress() != null) {
+                sources[activeCount++] = name;
+            }
+        }
+
+        if (activeCount == count) {
+            return sources;
+        }
+
+        String[] activeSources = new String[activeCount];
+        System.arraycopy(sources, 0, activeSources, 0, activeCount);
+        return activeSources;
+    }
+
     public static void newSource(String name, Address address) {
         Context.require(!contains(names, name), TAG + ": Data source already exists");
 
@@ -19,12 +19,15 @@ package network.balanced.score.core.rewards;
 import network.balanced.score.core.rewards.utils.BalanceData;
 import network.balanced.score.lib.interfaces.DataSourceScoreInterface;
 import score.*;
+import scorex.util.ArrayList;
 import scorex.util.HashMap;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 import static network.balanced.score.core.rewards.utils.RewardsConstants.BALANCE;
+import static network.balanced.score.core.rewards.utils.RewardsConstants.BALANCES;
 import static network.balanced.score.core.rewards.utils.RewardsConstants.TOTAL_SUPPLY;
 import static network.balanced.score.lib.utils.Constants.*;
 
@@ -53,6 +56,9 @@ public class DataSourceImpl {
             BigInteger.class);
     private final BranchDB<String, VarDB<BigInteger>> totalSupply = Context.newBranchDB("total_supply",
             BigInteger.class);
+    // Emission of the source summed over all days before the key day, recorded as the days are allocated
+    private final BranchDB<String, DictDB<BigInteger, BigInteger>> emissionIndex = Context.newBranchDB(
+            "emission_index", BigInteger.class);
 
     private final String dbKey;
 
@@ -156,6 +162,11 @@ public class DataSourceImpl {
 
     private void setWorkingBalance(Address user, BigInteger balance) {
         this.userWorkingBalance.at(dbKey).set(user, balance);
+        if (balance.signum() > 0) {
+            DataSourceDB.getUserSources(user).add(getName());
+        } else {
+            DataSourceDB.getUserSources(user).remove(getName());
+        }
     }
 
     public Boolean getPrecomp() {
@@ -185,6 +196,33 @@ public class DataSourceImpl {
         return dist;
     }
 
+    public void updateEmissionIndex(BigInteger day) {
+        DictDB<BigInteger, BigInteger> index = emissionIndex.at(dbKey);
+        BigInteger cumulativeEmission = index.get(day);
+        if (cumulativeEmission == null) {
+            cumulativeEmission = BigInteger.ZERO;
+            index.set(day, cumulativeEmission);
+        }
+
+        index.set(day.add(BigInteger.ONE), cumulativeEmission.add(getTotalDist(day, false)));
+    }
+
+    // Emission from the start of startDay to the start of endDay, null if the index does not cover it
+    private BigInteger getEmissionBetween(BigInteger startDay, BigInteger endDay) {
+        DictDB<BigInteger, BigInteger> index = emissionIndex.at(dbKey);
+        BigInteger start = index.get(startDay);
+        if (start == null) {
+            return null;
+        }
+
+        BigInteger end = index.get(endDay);
+        if (end == null) {
+            return null;
+        }
+
+        return end.subtract(start);
+    }
+
     public BigInteger getTotalDist(BigInteger day) {
         return totalDist.at(dbKey).getOrDefault(day, BigInteger.ZERO);
     }
@@ -228,6 +266,29 @@ public class DataSourceImpl {
         }
     }
 
+    public Map<String, Object> loadCurrentSupplyBatch(Address[] owners) {
+        try {
+            DataSourceScoreInterface datasource = new DataSourceScoreInterface(getContractAddress());
+            Map<String, Object> balanceAndSupply = datasource.getBalanceAndSupplyBatch(getName(), owners);
+            List<?> balances = (List<?>) balanceAndSupply.get(BALANCES);
+            if (balances != null && balances.size() == owners.length) {
+                return balanceAndSupply;
+            }
+        } catch (Exception e) {
+            // Fall back to one call per owner for providers without the batch method
+        }
+
+        List<BigInteger> balances = new ArrayList<>();
+        BigInteger supply = BigInteger.ZERO;
+        for (Address owner : owners) {
+            Map<String, BigInteger> balanceAndSupply = loadCurrentSupply(owner);
+            balances.add(balanceAndSupply.get(BALANCE));
+            supply = balanceAndSupply.get(TOTAL_SUPPLY);
+        }
+
+        return Map.of(BALANCES, balances, TOTAL_SUPPLY, supply);
+    }
+
     public BigInteger updateSingleUserData(BigInteger currentTime, BigInteger prevTotalSupply, Address user,
                                            BigInteger prevBalance, boolean readOnlyContext) {
         BigInteger currentUserWeight = getUserWeight(user);
@@ -315,6 +376,21 @@ public class DataSourceImpl {
             return runningTotal;
         }
 
+        // Whole days between the first and the last day are taken from the emission index when it covers them
+        BigInteger firstFullDay = lastUpdateTimestamp.divide(MICRO_SECONDS_IN_A_DAY).add(BigInteger.ONE);
+        BigInteger lastDay = currentTime.divide(MICRO_SECONDS_IN_A_DAY);
+        if (firstFullDay.compareTo(lastDay) < 0) {
+            BigInteger fullDaysEmission = getEmissionBetween(firstFullDay, lastDay);
+            if (fullDaysEmission != null) {
+                BigInteger firstDayEmission = getTotalDist(firstFullDay.subtract(BigInteger.ONE), readOnlyContext);
+                runningTotal = computeTotalWeight(runningTotal, firstDayEmission, totalSupply, lastUpdateTimestamp,
+                        firstFullDay.multiply(MICRO_SECONDS_IN_A_DAY));
+                runningTotal = computeTotalWeight(runningTotal, fullDaysEmission, totalSupply, BigInteger.ZERO,
+                        MICRO_SECONDS_IN_A_DAY);
+                lastUpdateTimestamp = lastDay.multiply(MICRO_SECONDS_IN_A_DAY);
+            }
+        }
+
         // Emit rewards based on the time delta * reward rate
         BigInteger previousRewardsDay;
         BigInteger previousDayEndUs;
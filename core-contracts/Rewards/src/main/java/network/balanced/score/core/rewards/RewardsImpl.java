@@ -19,6 +19,7 @@ package network.balanced.score.core.rewards;
 import network.balanced.score.core.rewards.utils.BalanceData;
 import network.balanced.score.core.rewards.utils.RewardsConstants;
 import network.balanced.score.core.rewards.weight.SourceWeightController;
+import network.balanced.score.lib.interfaces.DataSourceScoreInterface;
 import network.balanced.score.lib.interfaces.Rewards;
 import network.balanced.score.lib.structs.DistributionPercentage;
 import network.balanced.score.lib.structs.Point;
@@ -181,7 +182,7 @@ public class RewardsImpl implements Rewards {
         for (int i = 0; i < dataSourcesCount; i++) {
             String name = DataSourceDB.names.get(i);
             DataSourceImpl dataSource = DataSourceDB.get(name);
-            BigInteger currentTime = getTime();
+            BigInteger currentTime = getAccrualTime();
 
             BigInteger sourceRewards = dataSource.updateSingleUserData(currentTime, dataSource.getWorkingSupply(true)
                     , _holder, dataSource.getWorkingBalance(_holder, true), true);
@@ -322,32 +323,52 @@ public class RewardsImpl implements Rewards {
 
     /**
      * This method should be called once after the balanced has been launched, so that if there are baln tokens to
-     * mint it will be minted. In continuous rewards it will be minted while in non-continuous it will not  be minted
+     * mint it will be minted. In continuous rewards it will be minted while in non-continuous it will not  be minted.
+     * At most MAX_DISTRIBUTION_DAYS days are distributed per call, returns true once all days up to today are done.
      */
     @External
     public boolean distribute() {
         BigInteger platformDay = RewardsImpl.platformDay.get();
         BigInteger day = getDay();
+        if (platformDay.compareTo(day) > 0) {
+            return true;
+        }
 
-        while (platformDay.compareTo(day) <= 0) {
-            mintAndAllocateBalnReward(platformDay);
-            platformDay = RewardsImpl.platformDay.get();
+        BigInteger lastDay = day.min(platformDay.add(BigInteger.valueOf(MAX_DISTRIBUTION_DAYS - 1)));
+        List<String> recipients = distributionPercentages.keys();
+        BigInteger[] recipientShares = new BigInteger[recipients.size()];
+        for (int i = 0; i < recipientShares.length; i++) {
+            recipientShares[i] = BigInteger.ZERO;
         }
 
-        return true;
+        BigInteger totalDistribution = BigInteger.ZERO;
+        while (platformDay.compareTo(lastDay) <= 0) {
+            totalDistribution = totalDistribution.add(allocateBalnReward(platformDay, recipients, recipientShares));
+            platformDay = platformDay.add(BigInteger.ONE);
+        }
+
+        RewardsImpl.platformDay.set(platformDay);
+
+        Context.call(balnAddress.get(), "mint", totalDistribution, new byte[0]);
+        for (int i = 0; i < recipientShares.length; i++) {
+            Context.call(balnAddress.get(), "transfer", platformRecipients.get(recipients.get(i)).get(),
+                    recipientShares[i], new byte[0]);
+        }
+
+        return platformDay.compareTo(day) > 0;
     }
 
-    private boolean mintAndAllocateBalnReward(BigInteger platformDay) {
+    // Allocates the distribution of a day and adds the platform recipients' shares to recipientShares
+    private BigInteger allocateBalnReward(BigInteger platformDay, List<String> recipients,
+                                          BigInteger[] recipientShares) {
         BigInteger distribution = dailyDistribution(platformDay);
-        Context.call(balnAddress.get(), "mint", distribution, new byte[0]);
 
         BigInteger shares = HUNDRED_PERCENTAGE;
         BigInteger remaining = distribution;
-        List<String> recipients = distributionPercentages.keys();
-        for (String recipient : recipients) {
-            BigInteger split = distributionPercentages.get(recipient);
+        for (int i = 0; i < recipientShares.length; i++) {
+            BigInteger split = distributionPercentages.get(recipients.get(i));
             BigInteger share = split.multiply(remaining).divide(shares);
-            Context.call(balnAddress.get(), "transfer", platformRecipients.get(recipient).get(), share, new byte[0]);
+            recipientShares[i] = recipientShares[i].add(share);
             remaining = remaining.subtract(share);
             shares = shares.subtract(split);
         }
@@ -362,10 +383,25 @@ public class RewardsImpl implements Rewards {
         }
 
         dailyVotableDistribution.set(platformDay, remaining);
+        updateEmissionIndexes(platformDay);
 
-        RewardsImpl.platformDay.set(platformDay.add(BigInteger.ONE));
+        return distribution;
+    }
 
-        return false;
+    private void updateEmissionIndexes(BigInteger day) {
+        // Only days distributed by the weight controller are final once allocated
+        BigInteger migrationDay = weightControllerMigrationDay.get();
+        if (migrationDay == null || migrationDay.compareTo(day) > 0) {
+            return;
+        }
+
+        int dataSourcesCount = DataSourceDB.size();
+        for (int i = 0; i < dataSourcesCount; i++) {
+            String name = DataSourceDB.names.get(i);
+            if (SourceWeightController.hasSource(name)) {
+                DataSourceDB.get(name).updateEmissionIndex(day);
+            }
+        }
     }
 
     @External
@@ -378,14 +414,14 @@ public class RewardsImpl implements Rewards {
 
     @External
     public void claimRewards(@Optional String[] sources) {
-        if (sources == null) {
-            sources = getAllSources();
-        }
-
         Address address = Context.getCaller();
         BigInteger boostedBalance = fetchBoostedBalance(address);
         BigInteger boostedSupply = fetchBoostedSupply();
-        updateAllUserRewards(address, sources, boostedBalance, boostedSupply);
+        if (sources == null) {
+            updateActiveUserRewards(address, boostedBalance, boostedSupply);
+        } else {
+            updateAllUserRewards(address, sources, boostedBalance, boostedSupply);
+        }
 
         BigInteger userClaimableRewards = balnHoldings.getOrDefault(address.toString(), BigInteger.ZERO);
         if (userClaimableRewards.compareTo(BigInteger.ZERO) > 0) {
@@ -457,8 +493,8 @@ public class RewardsImpl implements Rewards {
         Context.require(dataSource.getContractAddress().equals(Context.getCaller()), TAG + ": Only data provider are " +
                 "allowed to update rewards data");
 
-        BigInteger currentTime = getTime();
         distribute();
+        BigInteger currentTime = getAccrualTime();
 
         BalanceData balances = new BalanceData();
         balances.boostedBalance = fetchBoostedBalance(_user);
@@ -479,19 +515,24 @@ public class RewardsImpl implements Rewards {
         Context.require(dataSource.getContractAddress().equals(Context.getCaller()), TAG + ": Only data provider are " +
                 "allowed to update rewards data");
 
-        BigInteger currentTime = getTime();
         distribute();
+        BigInteger currentTime = getAccrualTime();
 
         BigInteger boostedSupply = fetchBoostedSupply();
-
-        for (RewardsDataEntry entry : _data) {
+        Address[] users = getUsers(_data);
+        BigInteger[] boostedBalances = fetchBoostedBalances(users);
+        Map<String, Object> balanceAndSupply = dataSource.loadCurrentSupplyBatch(users);
+        List<?> currentBalances = (List<?>) balanceAndSupply.get(BALANCES);
+        BigInteger supply = (BigInteger) balanceAndSupply.get(TOTAL_SUPPLY);
+
+        for (int i = 0; i < _data.length; i++) {
+            RewardsDataEntry entry = _data[i];
             Address user = entry._user;
             BalanceData balances = new BalanceData();
             balances.boostedSupply = boostedSupply;
-            balances.boostedBalance = fetchBoostedBalance(user);
-            Map<String, BigInteger> balanceAndSupply = dataSource.loadCurrentSupply(user);
-            balances.balance = balanceAndSupply.get(BALANCE);
-            balances.supply = balanceAndSupply.get(TOTAL_SUPPLY);
+            balances.boostedBalance = boostedBalances[i];
+            balances.balance = (BigInteger) currentBalances.get(i);
+            balances.supply = supply;
             balances.prevWorkingBalance = dataSource.getWorkingBalance(user, entry._balance, false);
             balances.prevWorkingSupply = dataSource.getWorkingSupply(_totalSupply, false);
 
@@ -505,8 +546,8 @@ public class RewardsImpl implements Rewards {
         Context.require(dataSource.getContractAddress().equals(Context.getCaller()), TAG + ": Only data provider are " +
                 "allowed to update rewards data");
 
-        BigInteger currentTime = getTime();
         distribute();
+        BigInteger currentTime = getAccrualTime();
 
         BalanceData balances = new BalanceData();
         balances.boostedBalance = fetchBoostedBalance(_user);
@@ -525,16 +566,18 @@ public class RewardsImpl implements Rewards {
         Context.require(dataSource.getContractAddress().equals(Context.getCaller()), TAG + ": Only data provider are " +
                 "allowed to update rewards data");
 
-        BigInteger currentTime = getTime();
         distribute();
+        BigInteger currentTime = getAccrualTime();
 
         BigInteger boostedSupply = fetchBoostedSupply();
+        BigInteger[] boostedBalances = fetchBoostedBalances(getUsers(_data));
 
-        for (RewardsDataEntry entry : _data) {
+        for (int i = 0; i < _data.length; i++) {
+            RewardsDataEntry entry = _data[i];
             Address user = entry._user;
 
             BalanceData balances = new BalanceData();
-            balances.boostedBalance = fetchBoostedBalance(user);
+            balances.boostedBalance = boostedBalances[i];
             balances.boostedSupply = boostedSupply;
             balances.balance = entry._balance;
             balances.supply = _totalSupply;
@@ -549,7 +592,7 @@ public class RewardsImpl implements Rewards {
     public void onKick(Address user) {
         only(boostedBaln);
         BigInteger boostedSupply = fetchBoostedSupply();
-        updateAllUserRewards(user, getAllSources(), BigInteger.ZERO, boostedSupply);
+        updateActiveUserRewards(user, BigInteger.ZERO, boostedSupply);
     }
 
     @External
@@ -563,7 +606,7 @@ public class RewardsImpl implements Rewards {
     public void onBalanceUpdate(Address user, BigInteger balance) {
         only(boostedBaln);
         BigInteger boostedSupply = fetchBoostedSupply();
-        updateAllUserRewards(user, getAllSources(), balance, boostedSupply);
+        updateActiveUserRewards(user, balance, boostedSupply);
     }
 
     @External
@@ -582,6 +625,11 @@ public class RewardsImpl implements Rewards {
 
     @External(readonly = true)
     public String[] getUserSources(Address user) {
+        String[] activeSources = DataSourceDB.getActiveSources(user);
+        if (activeSources != null) {
+            return activeSources;
+        }
+
         int dataSourcesCount = DataSourceDB.size();
 
         List<String> sources = new ArrayList<>();
@@ -847,10 +895,27 @@ public class RewardsImpl implements Rewards {
         return sources;
     }
 
+    private void updateActiveUserRewards(Address user, BigInteger boostedBalance, BigInteger boostedSupply) {
+        String[] sources = DataSourceDB.getActiveSources(user);
+        if (sources != null) {
+            updateAllUserRewards(user, sources, boostedBalance, boostedSupply);
+            return;
+        }
+
+        // Users from before the source index are scanned once, which adds all their active sources to the index
+        updateAllUserRewards(user, getAllSources(), boostedBalance, boostedSupply);
+        DataSourceDB.setUserIndexed(user);
+    }
+
     private void updateAllUserRewards(Address user, String[] sources, BigInteger boostedBalance,
                                       BigInteger boostedSupply) {
         distribute();
-        BigInteger currentTime = getTime();
+        BigInteger currentTime = getAccrualTime();
+
+        // Group the sources the user takes part in by provider, so that each provider is queried once
+        List<Address> providers = new ArrayList<>();
+        Map<Address, List<String>> providerSources = new HashMap<>();
+        Map<String, BigInteger> workingBalances = new HashMap<>();
         for (String name : sources) {
             DataSourceImpl dataSource = DataSourceDB.get(name);
             BigInteger workingBalance = dataSource.getWorkingBalance(user, false);
@@ -858,19 +923,75 @@ public class RewardsImpl implements Rewards {
                 continue;
             }
 
-            BalanceData balances = new BalanceData();
-            balances.boostedBalance = fetchBoostedBalance(user);
-            balances.boostedSupply = boostedSupply;
-            Map<String, BigInteger> balanceAndSupply = dataSource.loadCurrentSupply(user);
-            balances.balance = balanceAndSupply.get(BALANCE);
-            balances.supply = balanceAndSupply.get(TOTAL_SUPPLY);
-            balances.prevWorkingBalance = workingBalance;
-            balances.prevWorkingSupply = dataSource.getWorkingSupply(false);
+            Address provider = dataSource.getContractAddress();
+            List<String> names = providerSources.get(provider);
+            if (names == null) {
+                names = new ArrayList<>();
+                providerSources.put(provider, names);
+                providers.add(provider);
+            }
+            names.add(name);
+            workingBalances.put(name, workingBalance);
+        }
 
-            updateUserAccruedRewards(name, currentTime, dataSource, user, balances);
+        for (Address provider : providers) {
+            List<String> names = providerSources.get(provider);
+            Map<String, Map<String, BigInteger>> balancesAndSupplies = loadCurrentSupplies(provider, names, user);
+            for (String name : names) {
+                DataSourceImpl dataSource = DataSourceDB.get(name);
+                Map<String, BigInteger> balanceAndSupply = balancesAndSupplies.get(name);
+
+                BalanceData balances = new BalanceData();
+                balances.boostedBalance = boostedBalance;
+                balances.boostedSupply = boostedSupply;
+                balances.balance = balanceAndSupply.get(BALANCE);
+                balances.supply = balanceAndSupply.get(TOTAL_SUPPLY);
+                balances.prevWorkingBalance = workingBalances.get(name);
+                balances.prevWorkingSupply = dataSource.getWorkingSupply(false);
+
+                updateUserAccruedRewards(name, currentTime, dataSource, user, balances);
+            }
         }
     }
 
+    private Map<String, Map<String, BigInteger>> loadCurrentSupplies(Address provider, List<String> names,
+                                                                      Address user) {
+        if (names.size() > 1) {
+            String[] arrNames = new String[names.size()];
+            for (int i = 0; i < arrNames.length; i++) {
+                arrNames[i] = names.get(i);
+            }
+
+            try {
+                DataSourceScoreInterface datasource = new DataSourceScoreInterface(provider);
+                Map<String, Map<String, BigInteger>> balancesAndSupplies =
+                        datasource.getBalancesAndSupplies(arrNames, user);
+                if (balancesAndSupplies != null && containsAll(balancesAndSupplies, arrNames)) {
+                    return balancesAndSupplies;
+                }
+            } catch (Exception e) {
+                // Fall back to one call per source for providers without the batch method
+            }
+        }
+
+        Map<String, Map<String, BigInteger>> balancesAndSupplies = new HashMap<>();
+        for (String name : names) {
+            balancesAndSupplies.put(name, DataSourceDB.get(name).loadCurrentSupply(user));
+        }
+
+        return balancesAndSupplies;
+    }
+
+    private static boolean containsAll(Map<String, Map<String, BigInteger>> balancesAndSupplies, String[] names) {
+        for (String name : names) {
+            if (!balancesAndSupplies.containsKey(name)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     private void updateUserAccruedRewards(String _name, BigInteger currentTime, DataSourceImpl dataSource,
                                           Address user, BalanceData balances) {
 
@@ -991,6 +1112,11 @@ public class RewardsImpl implements Rewards {
         return BigInteger.valueOf(Context.getBlockTimestamp()).subtract(startTimestamp.get());
     }
 
+    // Rewards only accrue up to the end of the last distributed day, the rest follows as distribute catches up
+    private static BigInteger getAccrualTime() {
+        return getTime().min(platformDay.get().multiply(MICRO_SECONDS_IN_A_DAY));
+    }
+
     static Object call(Address targetAddress, String method, Object... params) {
         return Context.call(targetAddress, method, params);
     }
@@ -1107,6 +1233,37 @@ public class RewardsImpl implements Rewards {
         }
     }
 
+    private BigInteger[] fetchBoostedBalances(Address[] users) {
+        BigInteger[] boostedBalances = new BigInteger[users.length];
+        try {
+            List<?> balances = (List<?>) RewardsImpl.call(boostedBaln.get(), "balanceOfBatch", users,
+                    BigInteger.ZERO);
+            if (balances != null && balances.size() == users.length) {
+                for (int i = 0; i < users.length; i++) {
+                    boostedBalances[i] = (BigInteger) balances.get(i);
+                }
+                return boostedBalances;
+            }
+        } catch (Exception e) {
+            // Fall back to one call per user
+        }
+
+        for (int i = 0; i < users.length; i++) {
+            boostedBalances[i] = fetchBoostedBalance(users[i]);
+        }
+
+        return boostedBalances;
+    }
+
+    private static Address[] getUsers(RewardsDataEntry[] data) {
+        Address[] users = new Address[data.length];
+        for (int i = 0; i < data.length; i++) {
+            users[i] = data[i]._user;
+        }
+
+        return users;
+    }
+
     private BigInteger fetchBoostedSupply() {
         try {
             return (BigInteger) RewardsImpl.call(boostedBaln.get(), "totalSupply", BigInteger.ZERO);
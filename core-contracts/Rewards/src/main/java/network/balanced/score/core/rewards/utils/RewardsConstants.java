@@ -22,6 +22,7 @@ import java.math.BigInteger;
 
 public class RewardsConstants extends Constants {
     public static final String DATASOURCE_DB_PREFIX = "datasource";
+    public static final String USER_SOURCES_DB_PREFIX = "user_sources";
 
     public static final String WORKER_TOKENS = "Worker Tokens";
     public static final String RESERVE_FUND = "Reserve Fund";
@@ -29,6 +30,9 @@ public class RewardsConstants extends Constants {
 
     public static final String TOTAL_SUPPLY = "_totalSupply";
     public static final String BALANCE = "_balance";
+    public static final String BALANCES = "_balances";
+
+    public static final int MAX_DISTRIBUTION_DAYS = 10;
 
     public static final BigInteger HUNDRED_PERCENTAGE = EXA;
     public static final BigInteger WEIGHT = BigInteger.valueOf(40)
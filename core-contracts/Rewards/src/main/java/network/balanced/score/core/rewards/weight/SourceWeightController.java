@@ -551,6 +551,10 @@ public class SourceWeightController {
     }
 
 
+    public static boolean hasSource(String name) {
+        return sourceTypes.get(name) != null;
+    }
+
     public static int getSourceType(String sourceName) {
         return sourceTypes.get(sourceName) - 1;
     }
@@ -29,11 +29,16 @@ import network.balanced.score.lib.interfaces.tokens.IRC2MintableScoreInterface;
 import network.balanced.score.lib.structs.DistributionPercentage;
 import network.balanced.score.lib.test.UnitTest;
 import network.balanced.score.lib.test.mock.MockContract;
+import org.mockito.MockedStatic;
 import score.Address;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import static network.balanced.score.lib.utils.Constants.MICRO_SECONDS_IN_A_DAY;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
@@ -175,6 +180,36 @@ class RewardsTestBase extends UnitTest {
         sm.getBlock().increase(DAY);
     }
 
+    @SuppressWarnings("unchecked")
+    BigInteger getExpectedRewards(String name, BigInteger startTime, BigInteger endTime) {
+        BigInteger expectedRewards = BigInteger.ZERO;
+        BigInteger day = startTime.divide(MICRO_SECONDS_IN_A_DAY);
+        while (day.multiply(MICRO_SECONDS_IN_A_DAY).compareTo(endTime) < 0) {
+            BigInteger dayStart = day.multiply(MICRO_SECONDS_IN_A_DAY).max(startTime);
+            BigInteger dayEnd = day.add(BigInteger.ONE).multiply(MICRO_SECONDS_IN_A_DAY).min(endTime);
+            Map<String, Map<String, Object>> data = (Map<String, Map<String, Object>>) rewardsScore.call(
+                    "getDataSourcesAt", day);
+            BigInteger dist = (BigInteger) data.get(name).get("total_dist");
+            expectedRewards = expectedRewards.add(dist.multiply(dayEnd.subtract(dayStart))
+                    .divide(MICRO_SECONDS_IN_A_DAY));
+            day = day.add(BigInteger.ONE);
+        }
+
+        return expectedRewards;
+    }
+
+    // Collects a spy of every data source loaded by name while the static mock is open
+    List<DataSourceImpl> spyDataSources(MockedStatic<DataSourceDB> dataSourceDBMock, String name) {
+        List<DataSourceImpl> dataSources = new ArrayList<>();
+        dataSourceDBMock.when(() -> DataSourceDB.get(name)).thenAnswer(invocation -> {
+            DataSourceImpl dataSource = spy((DataSourceImpl) invocation.callRealMethod());
+            dataSources.add(dataSource);
+            return dataSource;
+        });
+
+        return dataSources;
+    }
+
     void vote(Account user, String name, BigInteger weight) {
         rewardsScore.invoke(user, "voteForSource", name, weight);
     }
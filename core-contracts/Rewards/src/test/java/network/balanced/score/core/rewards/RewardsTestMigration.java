@@ -21,14 +21,18 @@ import static network.balanced.score.lib.utils.Constants.MICRO_SECONDS_IN_A_DAY;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.MockedStatic;
 
 import com.iconloop.score.test.Account;
 
@@ -142,6 +146,53 @@ class RewardsTestMigration extends RewardsTestBase {
         assertEquals(expectedBnUSDDist, bnUSDDist);
     }
 
+    @Test
+    void accrueRewards_spanBeforeEmissionIndex() {
+        // Arrange
+        Account account = sm.createAccount();
+        Account user = sm.createAccount();
+        String name = "sICX/ICX";
+        mockUserWeight(user, EXA);
+        rewardsScore.invoke(dex.account, "updateBalanceAndSupply", name, EXA, account.getAddress(), EXA);
+        BigInteger timeOffset = (BigInteger) rewardsScore.call("getTimeOffset");
+        BigInteger startTime = BigInteger.valueOf(sm.getBlock().getTimestamp()).subtract(timeOffset);
+
+        vote(user, "sICX/ICX", VOTE_POINTS.divide(BigInteger.TWO));
+        vote(user, "sICX/bnUSD", VOTE_POINTS.divide(BigInteger.TWO));
+
+        // Act
+        // The emission index only starts at the migration day, the source stays idle from before it
+        BigInteger day = (BigInteger) rewardsScore.call("getDay");
+        while (day.compareTo(migrationDay.add(BigInteger.TWO)) <= 0) {
+            sm.getBlock().increase(DAY);
+            rewardsScore.invoke(admin, "distribute");
+            day = (BigInteger) rewardsScore.call("getDay");
+        }
+        sm.getBlock().increase(DAY / 2);
+        rewardsScore.invoke(admin, "distribute");
+        BigInteger endTime = BigInteger.valueOf(sm.getBlock().getTimestamp()).subtract(timeOffset);
+
+        BigInteger rewards;
+        List<DataSourceImpl> dataSources;
+        try (MockedStatic<DataSourceDB> dataSourceDBMock = mockStatic(DataSourceDB.class, CALLS_REAL_METHODS)) {
+            dataSources = spyDataSources(dataSourceDBMock, name);
+            rewards = (BigInteger) rewardsScore.call("getBalnHolding", account.getAddress());
+        }
+
+        // Assert
+        BigInteger expectedRewards = getExpectedRewards(name, startTime, endTime);
+        assertTrue(expectedRewards.subtract(rewards).abs().compareTo(BigInteger.valueOf(100)) < 0);
+
+        // The index doesn't cover the start of the span, so every day is looked up one at a time
+        BigInteger startDay = startTime.divide(MICRO_SECONDS_IN_A_DAY);
+        BigInteger endDay = endTime.divide(MICRO_SECONDS_IN_A_DAY);
+        assertEquals(1, dataSources.size());
+        DataSourceImpl dataSource = dataSources.get(0);
+        for (day = startDay; day.compareTo(endDay) <= 0; day = day.add(BigInteger.ONE)) {
+            verify(dataSource).getTotalDist(eq(day), anyBoolean());
+        }
+    }
+
     @Test
     void getDistPercentages() {
         // Arrange
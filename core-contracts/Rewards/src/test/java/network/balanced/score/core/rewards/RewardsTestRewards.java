@@ -20,13 +20,17 @@ import com.iconloop.score.test.Account;
 import network.balanced.score.lib.structs.RewardsDataEntry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import score.Address;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
+import static network.balanced.score.core.rewards.utils.RewardsConstants.MAX_DISTRIBUTION_DAYS;
 import static network.balanced.score.core.rewards.utils.RewardsConstants.WEIGHT;
 import static network.balanced.score.lib.utils.Constants.MICRO_SECONDS_IN_A_DAY;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -69,12 +73,51 @@ class RewardsTestRewards extends RewardsTestBase {
         // Assert
         BigInteger emission = (BigInteger) rewardsScore.call("getEmission", BigInteger.valueOf(-1));
 
-        verify(baln.mock, times(day)).transfer(bwt.getAddress(), bwtDist.dist_percent.multiply(emission).divide(EXA),
-                new byte[0]);
-        verify(baln.mock, times(day)).transfer(daoFund.getAddress(),
-                daoDist.dist_percent.multiply(emission).divide(EXA), new byte[0]);
-        verify(baln.mock, times(day)).transfer(reserve.getAddress(),
-                reserveDist.dist_percent.multiply(emission).divide(EXA), new byte[0]);
+        BigInteger days = BigInteger.valueOf(day);
+        assertEquals(bwtDist.dist_percent.multiply(emission).divide(EXA).multiply(days),
+                getTotalTransferred(bwt.getAddress()));
+        assertEquals(daoDist.dist_percent.multiply(emission).divide(EXA).multiply(days),
+                getTotalTransferred(daoFund.getAddress()));
+        assertEquals(reserveDist.dist_percent.multiply(emission).divide(EXA).multiply(days),
+                getTotalTransferred(reserve.getAddress()));
+    }
+
+    @Test
+    void distribute_boundedDaysPerCall() {
+        // Arrange
+        int missedDays = MAX_DISTRIBUTION_DAYS * 2 + MAX_DISTRIBUTION_DAYS / 2;
+        sm.getBlock().increase(DAY * missedDays);
+        BigInteger emission = (BigInteger) rewardsScore.call("getEmission", BigInteger.valueOf(-1));
+        BigInteger maxDays = BigInteger.valueOf(MAX_DISTRIBUTION_DAYS);
+        clearInvocations(baln.mock);
+
+        // Act & Assert
+        rewardsScore.invoke(admin, "distribute");
+        verify(baln.mock).mint(emission.multiply(maxDays), new byte[0]);
+        verify(baln.mock).transfer(bwt.getAddress(), bwtDist.dist_percent.multiply(emission).divide(EXA)
+                .multiply(maxDays), new byte[0]);
+
+        rewardsScore.invoke(admin, "distribute");
+        verify(baln.mock, times(2)).mint(emission.multiply(maxDays), new byte[0]);
+
+        rewardsScore.invoke(admin, "distribute");
+        BigInteger remainingDays = BigInteger.valueOf(missedDays - 2 * MAX_DISTRIBUTION_DAYS);
+        verify(baln.mock).mint(emission.multiply(remainingDays), new byte[0]);
+
+        clearInvocations(baln.mock);
+        rewardsScore.invoke(admin, "distribute");
+        verify(baln.mock, never()).mint(any(BigInteger.class), any(byte[].class));
+    }
+
+    private BigInteger getTotalTransferred(Address recipient) {
+        ArgumentCaptor<BigInteger> amounts = ArgumentCaptor.forClass(BigInteger.class);
+        verify(baln.mock, atLeastOnce()).transfer(eq(recipient), amounts.capture(), any(byte[].class));
+        BigInteger total = BigInteger.ZERO;
+        for (BigInteger amount : amounts.getAllValues()) {
+            total = total.add(amount);
+        }
+
+        return total;
     }
 
     @Test
@@ -452,6 +495,120 @@ class RewardsTestRewards extends RewardsTestBase {
         verifyBalnReward(account2.getAddress(), user2ExpectedRewards);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    void updateBatchRewardsData_batchedBalances() {
+        // Arrange
+        Account account1 = sm.createAccount();
+        Account account2 = sm.createAccount();
+        Address[] users = new Address[]{account1.getAddress(), account2.getAddress()};
+
+        String name = "Loans";
+        BigInteger initialTotalSupply = BigInteger.TEN.multiply(EXA);
+        BigInteger user1CurrentBalance = BigInteger.ONE.multiply(EXA);
+        BigInteger user2CurrentBalance = BigInteger.TWO.multiply(EXA);
+        BigInteger currentTotalSupply = initialTotalSupply.add(user1CurrentBalance).add(user2CurrentBalance);
+
+        RewardsDataEntry user1Entry = new RewardsDataEntry();
+        user1Entry._balance = BigInteger.ZERO;
+        user1Entry._user = account1.getAddress();
+        RewardsDataEntry user2Entry = new RewardsDataEntry();
+        user2Entry._balance = BigInteger.ZERO;
+        user2Entry._user = account2.getAddress();
+        Object batch = new RewardsDataEntry[]{user1Entry, user2Entry};
+
+        BigInteger bBalnBalance = BigInteger.TEN.multiply(EXA);
+        BigInteger bBalnSupply = BigInteger.valueOf(100).multiply(EXA);
+        when(bBaln.mock.totalSupply(any(BigInteger.class))).thenReturn(bBalnSupply);
+        when(bBaln.mock.balanceOfBatch(any(Address[].class), any(BigInteger.class)))
+                .thenReturn(List.of(BigInteger.ZERO, bBalnBalance));
+        when(loans.mock.getBalanceAndSupplyBatch(eq(name), any(Address[].class))).thenReturn(Map.of(
+                "_balances", List.of(user1CurrentBalance, user2CurrentBalance),
+                "_totalSupply", currentTotalSupply
+        ));
+
+        // Act
+        rewardsScore.invoke(loans.account, "updateBatchRewardsData", name, initialTotalSupply, batch);
+
+        // Assert
+        verify(bBaln.mock).balanceOfBatch(users, BigInteger.ZERO);
+        verify(loans.mock).getBalanceAndSupplyBatch(name, users);
+        verify(bBaln.mock, never()).balanceOf(eq(account1.getAddress()), any(BigInteger.class));
+        verify(loans.mock, never()).getBalanceAndSupply(name, account1.getAddress());
+
+        BigInteger boost = currentTotalSupply.multiply(bBalnBalance).multiply(EXA.subtract(WEIGHT))
+                .divide(bBalnSupply).divide(WEIGHT);
+        BigInteger expectedWorkingBalance = user2CurrentBalance.add(boost)
+                .min(user2CurrentBalance.multiply(EXA).divide(WEIGHT));
+        Map<String, Map<String, BigInteger>> data = (Map<String, Map<String, BigInteger>>) rewardsScore.call(
+                "getBoostData", account2.getAddress(), new String[]{name});
+        assertEquals(expectedWorkingBalance, data.get(name).get("workingBalance"));
+        data = (Map<String, Map<String, BigInteger>>) rewardsScore.call("getBoostData", account1.getAddress(),
+                new String[]{name});
+        assertEquals(user1CurrentBalance, data.get(name).get("workingBalance"));
+    }
+
+    @Test
+    void claimRewards_loadsBalancesOncePerProvider() {
+        // Arrange
+        Account account = sm.createAccount();
+        String lpSource = "sICX/bnUSD";
+        rewardsScore.invoke(governance, "addNewDataSource", lpSource, dex.getAddress());
+
+        BigInteger balance = EXA;
+        BigInteger supply = BigInteger.TEN.multiply(EXA);
+        rewardsScore.invoke(dex.account, "updateBalanceAndSupply", "sICX/ICX", supply, account.getAddress(),
+                balance);
+        rewardsScore.invoke(dex.account, "updateBalanceAndSupply", lpSource, supply, account.getAddress(), balance);
+
+        Map<String, BigInteger> balanceAndSupply = Map.of(
+                "_balance", balance,
+                "_totalSupply", supply
+        );
+        when(dex.mock.getBalancesAndSupplies(any(String[].class), eq(account.getAddress()))).thenReturn(Map.of(
+                "sICX/ICX", balanceAndSupply,
+                lpSource, balanceAndSupply
+        ));
+        sm.getBlock().increase(DAY);
+        clearInvocations(dex.mock, loans.mock, bBaln.mock);
+
+        // Act
+        rewardsScore.invoke(account, "claimRewards", (Object) new String[]{"sICX/ICX", "Loans", lpSource});
+
+        // Assert
+        verify(dex.mock).getBalancesAndSupplies(new String[]{"sICX/ICX", lpSource}, account.getAddress());
+        verify(dex.mock, never()).getBalanceAndSupply(any(String.class), any(Address.class));
+        verify(loans.mock, never()).getBalanceAndSupply(any(String.class), any(Address.class));
+        verify(bBaln.mock).balanceOf(eq(account.getAddress()), any(BigInteger.class));
+    }
+
+    @Test
+    void userSources_indexedOnClaim() {
+        // Arrange
+        Account account = sm.createAccount();
+        BigInteger supply = BigInteger.TEN.multiply(EXA);
+        rewardsScore.invoke(loans.account, "updateBalanceAndSupply", "Loans", supply, account.getAddress(), EXA);
+        mockBalanceAndSupply(loans, "Loans", account.getAddress(), EXA, supply);
+        sm.getBlock().increase(DAY);
+
+        // Act
+        rewardsScore.invoke(account, "claimRewards", (Object) null);
+
+        // Assert
+        assertArrayEquals(new String[]{"Loans"}, (String[]) getUserSources(account.getAddress()));
+
+        // A source without a stored working balance would be queried by a full scan
+        rewardsScore.invoke(governance, "addNewDataSource", "Test Source", dex.getAddress());
+        clearInvocations(dex.mock, loans.mock);
+        rewardsScore.invoke(bBaln.account, "onBalanceUpdate", account.getAddress(), BigInteger.ZERO);
+        verify(dex.mock, never()).getBalanceAndSupply(any(String.class), any(Address.class));
+        verify(loans.mock).getBalanceAndSupply("Loans", account.getAddress());
+
+        rewardsScore.invoke(loans.account, "updateBalanceAndSupply", "Loans", supply, account.getAddress(),
+                BigInteger.ZERO);
+        assertArrayEquals(new String[0], (String[]) getUserSources(account.getAddress()));
+    }
+
     @Test
     void claimRewards_updateBalanceAndSupplyBatch() {
         // Arrange
@@ -22,9 +22,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.MockedStatic;
 import score.Address;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 import static network.balanced.score.core.rewards.weight.SourceWeightController.VOTE_POINTS;
@@ -32,8 +34,9 @@ import static network.balanced.score.lib.utils.Constants.MICRO_SECONDS_IN_A_DAY;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 // mimics dist percentages with votes
 // runs all the same tests as RewardsTestRewards but after migration
@@ -76,6 +79,7 @@ class RewardsTestRewardsPostMigration extends RewardsTestRewards {
                 BigInteger.valueOf(sm.getBlock().getTimestamp()));
         rewardsScore.invoke(owner, "updateRelativeSourceWeight", "sICX/bnUSD",
                 BigInteger.valueOf(sm.getBlock().getTimestamp()));
+        syncDistributions();
     }
 
     protected void setupDistributions() {
@@ -164,6 +168,44 @@ class RewardsTestRewardsPostMigration extends RewardsTestRewards {
         assertEquals(ICXFixed, distData.get("Fixed").get(icxPoolDist.recipient_name));
     }
 
+    @Test
+    void accrueRewards_afterIdleDays() {
+        // Arrange
+        Account account = sm.createAccount();
+        String name = "sICX/ICX";
+        rewardsScore.invoke(admin, "distribute");
+        rewardsScore.invoke(dex.account, "updateBalanceAndSupply", name, EXA, account.getAddress(), EXA);
+        BigInteger timeOffset = (BigInteger) rewardsScore.call("getTimeOffset");
+        BigInteger startTime = BigInteger.valueOf(sm.getBlock().getTimestamp()).subtract(timeOffset);
+
+        // Act
+        sm.getBlock().increase(DAY * 5 + DAY / 2);
+        rewardsScore.invoke(admin, "distribute");
+        BigInteger endTime = BigInteger.valueOf(sm.getBlock().getTimestamp()).subtract(timeOffset);
+
+        BigInteger rewards;
+        List<DataSourceImpl> dataSources;
+        try (MockedStatic<DataSourceDB> dataSourceDBMock = mockStatic(DataSourceDB.class, CALLS_REAL_METHODS)) {
+            dataSources = spyDataSources(dataSourceDBMock, name);
+            rewards = (BigInteger) rewardsScore.call("getBalnHolding", account.getAddress());
+        }
+
+        // Assert
+        BigInteger expectedRewards = getExpectedRewards(name, startTime, endTime);
+        assertTrue(expectedRewards.subtract(rewards).abs().compareTo(BigInteger.valueOf(100)) < 0);
+
+        // Only the partial first and last days are looked up, the whole days in between come from the index
+        BigInteger startDay = startTime.divide(MICRO_SECONDS_IN_A_DAY);
+        BigInteger endDay = endTime.divide(MICRO_SECONDS_IN_A_DAY);
+        assertEquals(1, dataSources.size());
+        DataSourceImpl dataSource = dataSources.get(0);
+        verify(dataSource, atLeastOnce()).getTotalDist(eq(startDay), anyBoolean());
+        verify(dataSource, atLeastOnce()).getTotalDist(eq(endDay), anyBoolean());
+        for (BigInteger day = startDay.add(BigInteger.ONE); day.compareTo(endDay) < 0; day = day.add(BigInteger.ONE)) {
+            verify(dataSource, never()).getTotalDist(eq(day), anyBoolean());
+        }
+    }
+
     @Test
     void getUserData() {
         // Assert
@@ -22,6 +22,7 @@ import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 import network.balanced.score.lib.interfaces.Router;
 import network.balanced.score.lib.utils.Names;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import score.Address;
 import score.Context;
 import score.UserRevertException;
@@ -43,6 +44,7 @@ public class RouterImpl implements Router {
     private static final String STAKING_ADDRESS = "staking_address";
     private static final String GOVERNANCE_ADDRESS = "governance_address";
     private static final String ADMIN = "admin";
+    private static final String COMPACT_SWAP_DATA = "compact_swap_data";
 
     public static final int MAX_NUMBER_OF_ITERATIONS = 4;
     private static final Address MINT_ADDRESS = new Address(new byte[Address.LENGTH]);
@@ -53,6 +55,7 @@ public class RouterImpl implements Router {
     private final VarDB<Address> sicx = Context.newVarDB(SICX_ADDRESS, Address.class);
     private final VarDB<Address> staking = Context.newVarDB(STAKING_ADDRESS, Address.class);
     private final VarDB<Address> dex = Context.newVarDB(DEX_ADDRESS, Address.class);
+    private final VarDB<Boolean> compactSwapData = Context.newVarDB(COMPACT_SWAP_DATA, Boolean.class);
 
     public RouterImpl(Address _governance) {
         if (governance.get() == null) {
@@ -125,6 +128,16 @@ public class RouterImpl implements Router {
         return staking.get();
     }
 
+    @External
+    public void setCompactSwapData(boolean _enabled) {
+        only(admin);
+        compactSwapData.set(_enabled);
+    }
+
+    @External(readonly = true)
+    public boolean isCompactSwapData() {
+        return compactSwapData.getOrDefault(false);
+    }
 
     private void swap(Address fromToken, Address toToken) {
         if (fromToken == null) {
@@ -133,19 +146,50 @@ public class RouterImpl implements Router {
             Context.transfer(staking.get(), balance);
         } else if (toToken == null) {
             Context.require(fromToken.equals(sicx.get()), TAG + ": ICX can only be traded with sICX token");
-            JsonObject data = new JsonObject();
-            data.add("method", "_swap_icx");
+            byte[] data;
+            if (compactSwapData.getOrDefault(false)) {
+                data = TokenFallbackData.encodeSwapIcx();
+            } else {
+                data = new JsonObject().add("method", "_swap_icx").toString().getBytes();
+            }
             BigInteger balance = (BigInteger) Context.call(fromToken, "balanceOf", Context.getAddress());
-            Context.call(fromToken, "transfer", dex.get(), balance, data.toString().getBytes());
+            Context.call(fromToken, "transfer", dex.get(), balance, data);
         } else {
-            JsonObject params = new JsonObject();
-            params.add("toToken", toToken.toString());
-            JsonObject data = new JsonObject();
-            data.add("method", "_swap");
-            data.add("params", params);
+            byte[] data;
+            if (compactSwapData.getOrDefault(false)) {
+                data = TokenFallbackData.encodeSwap(toToken, null, null, null);
+            } else {
+                data = createSwapJson(new JsonObject().add("toToken", toToken.toString()));
+            }
             BigInteger balance = (BigInteger) Context.call(fromToken, "balanceOf", Context.getAddress());
-            Context.call(fromToken, "transfer", dex.get(), balance, data.toString().getBytes());
+            Context.call(fromToken, "transfer", dex.get(), balance, data);
+        }
+    }
+
+    private void swapPath(Address fromToken, Address[] path, int firstHop, int lastHop) {
+        byte[] data;
+        if (compactSwapData.getOrDefault(false)) {
+            Address[] hops = new Address[lastHop - firstHop + 1];
+            System.arraycopy(path, firstHop, hops, 0, hops.length);
+            data = TokenFallbackData.encodeSwap(null, hops, null, null);
+        } else {
+            JsonArray pathArray = new JsonArray();
+            for (int i = firstHop; i <= lastHop; i++) {
+                pathArray.add(path[i].toString());
+            }
+            data = createSwapJson(new JsonObject().add("path", pathArray));
         }
+
+        BigInteger balance = (BigInteger) Context.call(fromToken, "balanceOf", Context.getAddress());
+        Context.call(fromToken, "transfer", dex.get(), balance, data);
+    }
+
+    // The compact encoding is only understood by Dex versions that accept it, JSON stays the default
+    private static byte[] createSwapJson(JsonObject params) {
+        JsonObject data = new JsonObject();
+        data.add("method", "_swap");
+        data.add("params", params);
+        return data.toString().getBytes();
     }
 
     private void route(Address from, Address startToken, Address[] _path, BigInteger _minReceive) {
@@ -160,9 +204,29 @@ public class RouterImpl implements Router {
             fromAddress = startToken;
         }
 
-        for (Address token : _path) {
-            swap(currentToken, token);
-            currentToken = token;
+        int hop = 0;
+        while (hop < _path.length) {
+            Address token = _path[hop];
+            if (currentToken == null || token == null) {
+                swap(currentToken, token);
+                currentToken = token;
+                hop++;
+                continue;
+            }
+
+            // Consecutive token hops are executed by the Dex in a single transfer
+            int lastHop = hop;
+            while (lastHop + 1 < _path.length && _path[lastHop + 1] != null) {
+                lastHop++;
+            }
+
+            if (lastHop == hop) {
+                swap(currentToken, token);
+            } else {
+                swapPath(currentToken, _path, hop, lastHop);
+            }
+            currentToken = _path[lastHop];
+            hop = lastHop + 1;
         }
 
         if (currentToken == null) {
@@ -200,10 +264,11 @@ public class RouterImpl implements Router {
      * <blockquote>
      * {"method": "METHOD_NAME", "params":{...}}
      * </blockquote>
+     * or a swap encoded with {@link TokenFallbackData}.
      *
      * @param _from  The address calling `transfer` on the other contract
      * @param _value Amount of token transferred
-     * @param _data  Data called by the transfer, json object expected.
+     * @param _data  Data called by the transfer, json object or encoded swap expected.
      */
     @External
     public void tokenFallback(Address _from, BigInteger _value, byte[] _data) {
@@ -212,6 +277,20 @@ public class RouterImpl implements Router {
             return;
         }
 
+        if (TokenFallbackData.isEncoded(_data)) {
+            TokenFallbackData data = TokenFallbackData.decode(_data);
+            Context.require(data.method == TokenFallbackData.SWAP, TAG + ": Fallback directly not allowed.");
+            Context.require(data.path != null, TAG + ": No path specified");
+            Context.require(data.path.length <= MAX_NUMBER_OF_ITERATIONS,
+                    TAG + ": Passed max swaps of " + MAX_NUMBER_OF_ITERATIONS);
+            BigInteger minimumReceive = data.minimumReceive == null ? BigInteger.ZERO : data.minimumReceive;
+            Context.require(minimumReceive.signum() >= 0, TAG + ": Must specify a positive number for minimum to " +
+                    "receive");
+
+            route(data.receiver == null ? _from : data.receiver, Context.getCaller(), data.path, minimumReceive);
+            return;
+        }
+
         String unpackedData = new String(_data);
         Context.require(!unpackedData.equals(""), "Token Fallback: Data can't be empty");
         JsonObject json = Json.parse(unpackedData).asObject();
@@ -16,10 +16,13 @@
 
 package network.balanced.score.core.router;
 
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
 import com.iconloop.score.test.Account;
 import com.iconloop.score.test.Score;
 import com.iconloop.score.test.ServiceManager;
 import com.iconloop.score.test.TestBase;
+import network.balanced.score.lib.utils.TokenFallbackData;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -38,6 +41,7 @@ import static network.balanced.score.lib.test.UnitTest.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 
 
 class RouterTest extends TestBase {
@@ -223,6 +227,231 @@ class RouterTest extends TestBase {
         contextMock.verify(() -> Context.transfer(newReceiver, BigInteger.TEN));
     }
 
+    private void mockTransfers(BigInteger balance) {
+        contextMock.when(() -> Context.transfer(any(Address.class), any(BigInteger.class))).then(invocationOnMock -> null);
+        contextMock.when(() -> Context.call(any(Address.class), eq("balanceOf"), eq(routerScore.getAddress()))).thenReturn(balance);
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class))).thenReturn(null);
+        contextMock.when(() -> Context.call(any(Address.class), eq("transfer"), any(Address.class),
+                any(BigInteger.class), any(byte[].class))).thenReturn(null);
+        contextMock.when(() -> Context.getBalance(routerScore.getAddress())).thenReturn(balance);
+    }
+
+    private byte[] pathSwapJson(Address... path) {
+        JsonArray pathArray = new JsonArray();
+        for (Address token : path) {
+            pathArray.add(token.toString());
+        }
+        JsonObject params = new JsonObject().add("path", pathArray);
+        return new JsonObject().add("method", "_swap").add("params", params).toString().getBytes();
+    }
+
+    @Test
+    void setAndGetCompactSwapData() {
+        assertEquals(false, routerScore.call("isCompactSwapData"));
+        setup();
+
+        Account nonAdmin = sm.createAccount();
+        String expectedErrorMessage = "Authorization Check: Authorization failed. Caller: " + nonAdmin.getAddress() +
+                " Authorized Caller: " + adminAccount.getAddress();
+        Executable nonAdminCall = () -> routerScore.invoke(nonAdmin, "setCompactSwapData", true);
+        expectErrorMessage(nonAdminCall, expectedErrorMessage);
+
+        routerScore.invoke(adminAccount, "setCompactSwapData", true);
+        assertEquals(true, routerScore.call("isCompactSwapData"));
+    }
+
+    @Test
+    void route_compactSwapData() {
+        setup();
+        routerScore.invoke(adminAccount, "setCompactSwapData", true);
+
+        BigInteger balance = BigInteger.valueOf(25).multiply(ICX);
+        Account balnToken = Account.newScoreAccount(scoreCount++);
+        Address bnusdToken = Account.newScoreAccount(scoreCount++).getAddress();
+
+        contextMock.reset();
+        mockTransfers(balance);
+
+        byte[] data = tokenData("_swap", Map.of("path",
+                new Object[]{bnusdToken.toString(), sicxScore.getAddress().toString(), null}));
+        routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(), balance, data);
+
+        byte[] expectedData = TokenFallbackData.encodeSwap(null, new Address[]{bnusdToken, sicxScore.getAddress()},
+                null, null);
+        contextMock.verify(() -> Context.call(balnToken.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedData));
+        byte[] expectedIcxData = TokenFallbackData.encodeSwapIcx();
+        contextMock.verify(() -> Context.call(sicxScore.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedIcxData));
+        contextMock.verify(() -> Context.transfer(owner.getAddress(), balance));
+    }
+
+    @Test
+    void route_groupsTokenHops() {
+        setup();
+
+        BigInteger icxToTrade = BigInteger.TEN.multiply(ICX);
+        BigInteger balance = BigInteger.valueOf(25).multiply(ICX);
+        Address balnToken = Account.newScoreAccount(scoreCount++).getAddress();
+        Address bnusdToken = Account.newScoreAccount(scoreCount++).getAddress();
+
+        contextMock.reset();
+        mockTransfers(balance);
+
+        Address[] path = new Address[]{sicxScore.getAddress(), balnToken, bnusdToken};
+        sm.call(owner, icxToTrade, routerScore.getAddress(), "route", path, BigInteger.ZERO);
+
+        // ICX is staked first, then both token hops are sent to the Dex in a single transfer
+        byte[] expectedData = pathSwapJson(balnToken, bnusdToken);
+        contextMock.verify(() -> Context.transfer(stakingScore.getAddress(), balance));
+        contextMock.verify(() -> Context.call(sicxScore.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedData));
+        contextMock.verify(() -> Context.call(eq(balnToken), eq("transfer"), any(Address.class),
+                any(BigInteger.class), any(byte[].class)), never());
+        contextMock.verify(() -> Context.call(bnusdToken, "transfer", owner.getAddress(), balance));
+    }
+
+    @Test
+    void route_groupedPathEndingInIcx() {
+        setup();
+
+        BigInteger balance = BigInteger.valueOf(25).multiply(ICX);
+        Account balnToken = Account.newScoreAccount(scoreCount++);
+        Address bnusdToken = Account.newScoreAccount(scoreCount++).getAddress();
+
+        contextMock.reset();
+        mockTransfers(balance);
+
+        byte[] data = tokenData("_swap", Map.of("path",
+                new Object[]{bnusdToken.toString(), sicxScore.getAddress().toString(), null}));
+        routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(), balance, data);
+
+        // The token hops are grouped, the sICX to ICX hop is always sent on its own
+        byte[] expectedData = pathSwapJson(bnusdToken, sicxScore.getAddress());
+        contextMock.verify(() -> Context.call(balnToken.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedData));
+        contextMock.verify(() -> Context.call(eq(bnusdToken), eq("transfer"), any(Address.class),
+                any(BigInteger.class), any(byte[].class)), never());
+        byte[] expectedIcxData = new JsonObject().add("method", "_swap_icx").toString().getBytes();
+        contextMock.verify(() -> Context.call(sicxScore.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedIcxData));
+        contextMock.verify(() -> Context.transfer(owner.getAddress(), balance));
+    }
+
+    @Test
+    void route_groupedPathMinimumReceive() {
+        setup();
+
+        BigInteger balance = BigInteger.valueOf(25).multiply(ICX);
+        BigInteger received = BigInteger.valueOf(20).multiply(ICX);
+        Address balnToken = Account.newScoreAccount(scoreCount++).getAddress();
+        Address bnusdToken = Account.newScoreAccount(scoreCount++).getAddress();
+
+        contextMock.reset();
+        mockTransfers(balance);
+        contextMock.when(() -> Context.call(bnusdToken, "balanceOf", routerScore.getAddress())).thenReturn(received);
+
+        BigInteger minimumReceive = received.add(BigInteger.ONE);
+        byte[] belowMinimum = tokenData("_swap", Map.of("path",
+                new Object[]{balnToken.toString(), bnusdToken.toString()}, "minimumReceive", minimumReceive.toString()));
+        Executable belowMinimumReceive = () -> routerScore.invoke(sicxScore, "tokenFallback", owner.getAddress(),
+                balance, belowMinimum);
+        String expectedErrorMessage = "Reverted(0): " + TAG + ": Below minimum receive amount of " + minimumReceive;
+        expectErrorMessage(belowMinimumReceive, expectedErrorMessage);
+
+        byte[] atMinimum = tokenData("_swap", Map.of("path",
+                new Object[]{balnToken.toString(), bnusdToken.toString()}, "minimumReceive", received.toString()));
+        routerScore.invoke(sicxScore, "tokenFallback", owner.getAddress(), balance, atMinimum);
+
+        byte[] expectedData = pathSwapJson(balnToken, bnusdToken);
+        contextMock.verify(() -> Context.call(sicxScore.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedData));
+        contextMock.verify(() -> Context.call(bnusdToken, "transfer", owner.getAddress(), received));
+    }
+
+    @Test
+    void tokenFallback_encodedSwap() {
+        setup();
+        routerScore.invoke(adminAccount, "setCompactSwapData", true);
+
+        BigInteger balance = BigInteger.valueOf(25).multiply(ICX);
+        Account balnToken = Account.newScoreAccount(scoreCount++);
+        Address bnusdToken = Account.newScoreAccount(scoreCount++).getAddress();
+
+        byte[] depositData = TokenFallbackData.encodeDeposit();
+        Executable noSwapMethod = () -> routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(),
+                balance, depositData);
+        String expectedErrorMessage = "Reverted(0): " + TAG + ": Fallback directly not allowed.";
+        expectErrorMessage(noSwapMethod, expectedErrorMessage);
+
+        byte[] noPathData = TokenFallbackData.encodeSwap(bnusdToken, null, null, null);
+        Executable noPath = () -> routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(), balance,
+                noPathData);
+        expectedErrorMessage = "Reverted(0): " + TAG + ": No path specified";
+        expectErrorMessage(noPath, expectedErrorMessage);
+
+        Address[] pathWithMoreHops = new Address[MAX_NUMBER_OF_ITERATIONS + 1];
+        for (int i = 0; i < MAX_NUMBER_OF_ITERATIONS + 1; i++) {
+            pathWithMoreHops[i] = Account.newScoreAccount(scoreCount++).getAddress();
+        }
+        byte[] maxHopsData = TokenFallbackData.encodeSwap(null, pathWithMoreHops, null, null);
+        Executable maxTradeHops = () -> routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(), balance,
+                maxHopsData);
+        expectedErrorMessage = "Reverted(0): " + TAG + ": Passed max swaps of " + MAX_NUMBER_OF_ITERATIONS;
+        expectErrorMessage(maxTradeHops, expectedErrorMessage);
+
+        byte[] negativeData = TokenFallbackData.encodeSwap(null, new Address[]{bnusdToken}, BigInteger.ONE.negate(),
+                null);
+        Executable negativeMinimumReceive = () -> routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(),
+                balance, negativeData);
+        expectedErrorMessage = "Reverted(0): " + TAG + ": Must specify a positive number for minimum to receive";
+        expectErrorMessage(negativeMinimumReceive, expectedErrorMessage);
+
+        contextMock.reset();
+        mockTransfers(balance);
+
+        // Explicit receiver and minimum receive
+        Address newReceiver = sm.createAccount().getAddress();
+        byte[] swapData = TokenFallbackData.encodeSwap(null, new Address[]{sicxScore.getAddress(), bnusdToken},
+                balance, newReceiver);
+        routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(), balance, swapData);
+
+        byte[] expectedData = TokenFallbackData.encodeSwap(null, new Address[]{sicxScore.getAddress(), bnusdToken},
+                null, null);
+        contextMock.verify(() -> Context.call(balnToken.getAddress(), "transfer", dexScore.getAddress(), balance,
+                expectedData));
+        contextMock.verify(() -> Context.call(bnusdToken, "transfer", newReceiver, balance));
+
+        byte[] aboveBalanceData = TokenFallbackData.encodeSwap(null, new Address[]{bnusdToken},
+                balance.add(BigInteger.ONE), null);
+        Executable belowMinimumReceive = () -> routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(),
+                balance, aboveBalanceData);
+        expectedErrorMessage = "Reverted(0): " + TAG + ": Below minimum receive amount of " + balance.add(BigInteger.ONE);
+        expectErrorMessage(belowMinimumReceive, expectedErrorMessage);
+    }
+
+    @Test
+    void tokenFallback_encodedSwapDefaults() {
+        setup();
+        routerScore.invoke(adminAccount, "setCompactSwapData", true);
+
+        Account balnToken = Account.newScoreAccount(scoreCount++);
+        Address bnusdToken = Account.newScoreAccount(scoreCount++).getAddress();
+
+        contextMock.reset();
+        mockTransfers(BigInteger.ZERO);
+
+        // Without receiver and minimum receive the sender gets the output, even if nothing was received
+        byte[] swapData = TokenFallbackData.encodeSwap(null, new Address[]{bnusdToken}, null, null);
+        routerScore.invoke(balnToken, "tokenFallback", owner.getAddress(), BigInteger.TEN, swapData);
+
+        byte[] expectedData = TokenFallbackData.encodeSwap(bnusdToken, null, null, null);
+        contextMock.verify(() -> Context.call(balnToken.getAddress(), "transfer", dexScore.getAddress(),
+                BigInteger.ZERO, expectedData));
+        contextMock.verify(() -> Context.call(bnusdToken, "transfer", owner.getAddress(), BigInteger.ZERO));
+    }
+
     @Test
     void fallback() {
         setup();
@@ -22,6 +22,7 @@ import network.balanced.score.lib.utils.Names;
 import score.*;
 import score.annotation.EventLog;
 import score.annotation.External;
+import scorex.util.ArrayList;
 import scorex.util.HashMap;
 
 import java.math.BigInteger;
@@ -174,6 +175,31 @@ public class StakedLPImpl implements StakedLP {
         return rewardsData;
     }
 
+    @External(readonly = true)
+    public Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners) {
+        BigInteger poolId = dataSourceIds.get(_name);
+        List<BigInteger> balances = new ArrayList<>();
+        for (Address owner : _owners) {
+            balances.add(balanceOf(owner, poolId));
+        }
+
+        Map<String, Object> rewardsData = new HashMap<>();
+        rewardsData.put("_balances", balances);
+        rewardsData.put("_totalSupply", totalStaked(poolId));
+
+        return rewardsData;
+    }
+
+    @External(readonly = true)
+    public Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner) {
+        Map<String, Map<String, BigInteger>> rewardsData = new HashMap<>();
+        for (String name : _names) {
+            rewardsData.put(name, getBalanceAndSupply(name, _owner));
+        }
+
+        return rewardsData;
+    }
+
     @External(readonly = true)
     public BigInteger getBnusdValue(String _name) {
         return Context.call(BigInteger.class, dex.get(), "getLPBnusdValue", dataSourceIds.get(_name));
@@ -57,6 +57,8 @@ public class StakingImpl implements Staking {
     private final DictDB<Address, BigInteger> icxPayable = Context.newDictDB(ICX_PAYABLE, BigInteger.class);
     private final VarDB<BigInteger> unstakeBatchLimit = Context.newVarDB(UNSTAKE_BATCH_LIMIT, BigInteger.class);
     public static final VarDB<Boolean> stakingOn = Context.newVarDB(STAKING_ON, Boolean.class);
+    // Contracts which are sent the new rate whenever it changes
+    private final ArrayDB<Address> rateSubscribers = Context.newArrayDB(RATE_SUBSCRIBERS, Address.class);
     private final LinkedListDB unstakeRequestList = new LinkedListDB(UNSTAKE_DICT);
     private final DictDB<Address, DelegationListDBSdo> userDelegationInPercentage =
             Context.newDictDB(USER_DELEGATION_PERCENTAGE, DelegationListDBSdo.class);
@@ -106,6 +108,10 @@ public class StakingImpl implements Staking {
     public void IscoreClaimed(BigInteger block_height, BigInteger rewards) {
     }
 
+    @EventLog(indexed = 1)
+    public void RateUpdateFailed(Address subscriber, BigInteger rate) {
+    }
+
     // Read Only methods
     @External(readonly = true)
     public String name() {
@@ -152,6 +158,56 @@ public class StakingImpl implements Staking {
         return sicxAddress.get();
     }
 
+    @External
+    public void addRateSubscriber(Address _address) {
+        onlyOwner();
+        Context.require(_address.isContract(), TAG + ": Address provided is an EOA address. A contract " +
+                "address is required.");
+        Context.require(!getRateSubscribers().contains(_address), TAG + ": Address is already a rate subscriber.");
+        Context.require(rateSubscribers.size() < MAX_RATE_SUBSCRIBERS, TAG + ": Maximum number of rate " +
+                "subscribers reached.");
+        rateSubscribers.add(_address);
+        Context.call(_address, "updateSicxRate", getTodayRate());
+    }
+
+    @External
+    public void removeRateSubscriber(Address _address) {
+        onlyOwner();
+        int size = rateSubscribers.size();
+        for (int i = 0; i < size; i++) {
+            if (rateSubscribers.get(i).equals(_address)) {
+                Address last = rateSubscribers.pop();
+                if (i < size - 1) {
+                    rateSubscribers.set(i, last);
+                }
+                // a zero rate tells the subscriber to drop its cached rate
+                Context.call(_address, "updateSicxRate", BigInteger.ZERO);
+                return;
+            }
+        }
+        Context.revert(TAG + ": Address is not a rate subscriber.");
+    }
+
+    @External(readonly = true)
+    public List<Address> getRateSubscribers() {
+        List<Address> subscribers = new ArrayList<>();
+        int size = rateSubscribers.size();
+        for (int i = 0; i < size; i++) {
+            subscribers.add(rateSubscribers.get(i));
+        }
+        return subscribers;
+    }
+
+    private void pushRate(Address subscriber, BigInteger newRate) {
+        // A failing subscriber must not block staking, unstaking or claiming. Subscribers that miss an update keep
+        // their previous rate until the next one, the event shows which rate they missed.
+        try {
+            Context.call(subscriber, "updateSicxRate", newRate);
+        } catch (Exception e) {
+            RateUpdateFailed(subscriber, newRate);
+        }
+    }
+
     @External
     public void setUnstakeBatchLimit(BigInteger _limit) {
         onlyOwner();
@@ -473,6 +529,10 @@ public class StakingImpl implements Staking {
             }
             rate.set(newRate);
             this.totalStake.set(newTotalStake);
+            int subscriberCount = rateSubscribers.size();
+            for (int i = 0; i < subscriberCount; i++) {
+                pushRate(rateSubscribers.get(i), newRate);
+            }
 
             Map<String, BigInteger> prepDelegations = prepDelegationInIcx.getOrDefault(DEFAULT_DELEGATION_LIST).toMap();
             BigInteger totalIcxSpecification = BigInteger.ZERO;
@@ -34,6 +34,7 @@ public class Constant {
     public static final BigInteger DEFAULT_DECIMAL_VALUE = BigInteger.valueOf(18L);
     public static final BigInteger MINIMUM_DELEGATION_PERCENTAGE = pow10(15);
     public static final BigInteger BLOCKS_IN_A_WEEK = BigInteger.valueOf(7 * 43200L);
+    public static final int MAX_RATE_SUBSCRIBERS = 5;
 
     public static final String SICX_SUPPLY = "sICX_supply";
     public static final String RATE = "_rate";
@@ -57,6 +58,7 @@ public class Constant {
     public static final String UNSTAKE_DICT = "unstake_dict";
     public static final String USER_DELEGATION_PERCENTAGE = "user_delegation_percentage";
     public static final String PREP_DELEGATION_ICX = "prep_delegation_icx";
+    public static final String RATE_SUBSCRIBERS = "rate_subscribers";
 
     public static DelegationListDBSdo DEFAULT_DELEGATION_LIST = getDelegationList();
 
@@ -30,6 +30,7 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import score.Address;
 import score.Context;
+import score.UserRevertedException;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -195,6 +196,93 @@ class StakingTest extends TestBase {
         assertEquals(extraICXBalance, staking.call("getLifetimeReward"));
     }
 
+    @Test
+    void rateSubscribers() {
+        Account dex = Account.newScoreAccount(scoreAccountCount++);
+        Verification updateSicxRate = () -> Context.call(eq(dex.getAddress()), eq("updateSicxRate"),
+                any(BigInteger.class));
+        contextMock.when(updateSicxRate).thenReturn(null);
+
+        staking.invoke(owner, "addRateSubscriber", dex.getAddress());
+        assertEquals(List.of(dex.getAddress()), staking.call("getRateSubscribers"));
+        contextMock.verify(() -> Context.call(dex.getAddress(), "updateSicxRate", ICX));
+
+        Executable addTwice = () -> staking.invoke(owner, "addRateSubscriber", dex.getAddress());
+        expectErrorMessage(addTwice, TAG + ": Address is already a rate subscriber.");
+
+        BigInteger extraICXBalance = BigInteger.valueOf(397L);
+        BigInteger stakeAmount = BigInteger.valueOf(199L);
+        contextMock.when(() -> Context.getBalance(staking.getAddress())).thenReturn(extraICXBalance.add(stakeAmount));
+        sicxTotalSupply = BigInteger.valueOf(719L);
+        contextMock.when(getSicxTotalSupply).thenReturn(sicxTotalSupply);
+        doReturn(sicxTotalSupply).when(stakingSpy).getTotalStake();
+
+        sm.call(owner, stakeAmount, staking.getAddress(), "stakeICX", new Address(new byte[Address.LENGTH]),
+                new byte[0]);
+        BigInteger newRate = sicxTotalSupply.add(extraICXBalance).multiply(ICX).divide(sicxTotalSupply);
+        contextMock.verify(() -> Context.call(dex.getAddress(), "updateSicxRate", newRate));
+
+        staking.invoke(owner, "removeRateSubscriber", dex.getAddress());
+        assertEquals(List.of(), staking.call("getRateSubscribers"));
+        contextMock.verify(() -> Context.call(dex.getAddress(), "updateSicxRate", BigInteger.ZERO));
+        Executable removeTwice = () -> staking.invoke(owner, "removeRateSubscriber", dex.getAddress());
+        expectErrorMessage(removeTwice, TAG + ": Address is not a rate subscriber.");
+    }
+
+    @Test
+    void rateSubscribers_failingSubscriber() {
+        Account dex = Account.newScoreAccount(scoreAccountCount++);
+        Account broken = Account.newScoreAccount(scoreAccountCount++);
+        contextMock.when(() -> Context.call(eq(dex.getAddress()), eq("updateSicxRate"), any(BigInteger.class)))
+                .thenReturn(null);
+        contextMock.when(() -> Context.call(eq(broken.getAddress()), eq("updateSicxRate"), any(BigInteger.class)))
+                .thenReturn(null);
+        staking.invoke(owner, "addRateSubscriber", broken.getAddress());
+        staking.invoke(owner, "addRateSubscriber", dex.getAddress());
+        contextMock.when(() -> Context.call(eq(broken.getAddress()), eq("updateSicxRate"), any(BigInteger.class)))
+                .thenThrow(new UserRevertedException());
+
+        BigInteger extraICXBalance = BigInteger.valueOf(397L);
+        BigInteger stakeAmount = BigInteger.valueOf(199L);
+        contextMock.when(() -> Context.getBalance(staking.getAddress())).thenReturn(extraICXBalance.add(stakeAmount));
+        sicxTotalSupply = BigInteger.valueOf(719L);
+        contextMock.when(getSicxTotalSupply).thenReturn(sicxTotalSupply);
+        doReturn(sicxTotalSupply).when(stakingSpy).getTotalStake();
+
+        sm.call(owner, stakeAmount, staking.getAddress(), "stakeICX", new Address(new byte[Address.LENGTH]),
+                new byte[0]);
+        BigInteger newRate = sicxTotalSupply.add(extraICXBalance).multiply(ICX).divide(sicxTotalSupply);
+        assertEquals(newRate, staking.call("getTodayRate"));
+        contextMock.verify(() -> Context.call(dex.getAddress(), "updateSicxRate", newRate));
+        verify(stakingSpy).RateUpdateFailed(broken.getAddress(), newRate);
+        verify(stakingSpy, never()).RateUpdateFailed(eq(dex.getAddress()), any(BigInteger.class));
+
+        // Removal tells the subscriber to drop its rate, so it reverts if the subscriber fails
+        Executable removeBroken = () -> staking.invoke(owner, "removeRateSubscriber", broken.getAddress());
+        assertThrows(Throwable.class, removeBroken);
+        assertEquals(List.of(broken.getAddress(), dex.getAddress()), staking.call("getRateSubscribers"));
+
+        contextMock.when(() -> Context.call(eq(broken.getAddress()), eq("updateSicxRate"), any(BigInteger.class)))
+                .thenReturn(null);
+        staking.invoke(owner, "removeRateSubscriber", broken.getAddress());
+        assertEquals(List.of(dex.getAddress()), staking.call("getRateSubscribers"));
+        contextMock.verify(() -> Context.call(broken.getAddress(), "updateSicxRate", BigInteger.ZERO));
+    }
+
+    @Test
+    void rateSubscribers_limit() {
+        for (int i = 0; i < MAX_RATE_SUBSCRIBERS; i++) {
+            Account subscriber = Account.newScoreAccount(scoreAccountCount++);
+            contextMock.when(() -> Context.call(eq(subscriber.getAddress()), eq("updateSicxRate"),
+                    any(BigInteger.class))).thenReturn(null);
+            staking.invoke(owner, "addRateSubscriber", subscriber.getAddress());
+        }
+
+        Account extra = Account.newScoreAccount(scoreAccountCount++);
+        Executable addExtra = () -> staking.invoke(owner, "addRateSubscriber", extra.getAddress());
+        expectErrorMessage(addExtra, TAG + ": Maximum number of rate subscribers reached.");
+    }
+
     @Test
     void toggleStakingOn() {
         assertEquals(true, staking.call("getStakingOn"));
@@ -81,6 +81,9 @@ public interface BoostedBaln extends BalnAddress, RewardsAddress, DividendsAddre
     @External(readonly = true)
     BigInteger balanceOf(Address _owner, @Optional BigInteger timestamp);
 
+    @External(readonly = true)
+    List<BigInteger> balanceOfBatch(Address[] _owners, @Optional BigInteger timestamp);
+
     @External(readonly = true)
     BigInteger balanceOfAt(Address _owner, BigInteger block);
 
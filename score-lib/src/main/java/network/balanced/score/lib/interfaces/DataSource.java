@@ -42,4 +42,10 @@ public interface DataSource {
 
     @External
     Map<String, BigInteger> getBalanceAndSupply(String _name, Address _owner);
+
+    @External
+    Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners);
+
+    @External
+    Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner);
 }
\ No newline at end of file
@@ -77,6 +77,9 @@ public interface Dex extends AdminAddress, BnusdAddress, GovernanceAddress, Name
     @External
     void cancelSicxicxOrder();
 
+    @External
+    void updateIcxBucketRewards(BigInteger _bucketId);
+
     @External
     void transfer(Address _to, BigInteger _value, BigInteger _id, @Optional byte[] _data);
 
@@ -146,21 +149,64 @@ public interface Dex extends AdminAddress, BnusdAddress, GovernanceAddress, Name
     @External(readonly = true)
     BigInteger getPriceByName(String _name);
 
+    @External(readonly = true)
+    BigInteger getTWAP(BigInteger _id, BigInteger _window);
+
+    @External(readonly = true)
+    BigInteger getPoolAmplification(BigInteger _id);
+
     @External(readonly = true)
     BigInteger getICXBalance(Address _address);
 
     @External(readonly = true)
     String getPoolName(BigInteger _id);
 
+    @External
+    void updateSicxRate(BigInteger _rate);
+
     @External(readonly = true)
     Map<String, Object> getPoolStats(BigInteger _id);
 
+    @External(readonly = true)
+    List<Map<String, Object>> getPoolStatsBatch(BigInteger[] _ids);
+
+    @External(readonly = true)
+    List<List<BigInteger>> getPoolStatsBatchCompact(BigInteger[] _ids);
+
+    @External(readonly = true)
+    List<Map<String, Object>> getPoolsForToken(Address _token, @Optional int _offset, @Optional int _limit);
+
+    @External(readonly = true)
+    List<Map<String, Object>> getAllPools(@Optional int _offset, @Optional int _limit);
+
+    @External(readonly = true)
+    Map<String, Object> quoteBestRoute(Address _fromToken, Address _toToken, BigInteger _amountIn,
+                                       @Optional int _maxHops);
+
+    @External(readonly = true)
+    BigInteger getSwapOutput(Address _fromToken, Address _toToken, BigInteger _amountIn);
+
+    @External(readonly = true)
+    BigInteger getSwapInput(Address _fromToken, Address _toToken, BigInteger _amountOut);
+
+    @External(readonly = true)
+    List<BigInteger> getSwapOutputBatch(Address _fromToken, Address _toToken, BigInteger[] _amountsIn);
+
+    @External(readonly = true)
+    List<BigInteger> getSwapInputBatch(Address _fromToken, Address _toToken, BigInteger[] _amountsOut);
+
     @External(readonly = true)
     BigInteger totalDexAddresses(BigInteger _id);
 
     @External(readonly = true)
     Map<String, BigInteger> getBalanceAndSupply(String _name, Address _owner);
 
+    @External(readonly = true)
+    Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners);
+
+    @External(readonly = true)
+    Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner);
+
     @External(readonly = true)
     BigInteger balanceOfAt(Address _account, BigInteger _id, BigInteger _snapshot_id, @Optional boolean _twa);
 
@@ -186,6 +232,10 @@ public interface Dex extends AdminAddress, BnusdAddress, GovernanceAddress, Name
     void add(Address _baseToken, Address _quoteToken, BigInteger _baseValue, BigInteger _quoteValue,
              @Optional boolean _withdraw_unused);
 
+    @External
+    void createStablePool(Address _baseToken, Address _quoteToken, BigInteger _baseValue, BigInteger _quoteValue,
+                          BigInteger _amplification);
+
     @External
     void withdrawSicxEarnings(@Optional BigInteger _value);
 
@@ -72,6 +72,12 @@ public interface FeeHandler extends Name, AddressManager {
     @External(readonly = true)
     BigInteger getBalnRouteLimit();
 
+    @External
+    void setCompactSwapData(boolean _enabled);
+
+    @External(readonly = true)
+    boolean isCompactSwapData();
+
     @External
     void addDefaultRoute(Address token);
 
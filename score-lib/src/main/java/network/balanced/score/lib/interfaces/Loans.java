@@ -28,6 +28,7 @@ import score.annotation.Optional;
 import score.annotation.Payable;
 
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 @ScoreClient
@@ -59,9 +60,24 @@ public interface Loans extends Name, TokenFallback, AdminAddress, DexAddress, Go
     @External(readonly = true)
     BigInteger getTotalCollateral();
 
+    @External(readonly = true)
+    Map<String, Object> getCollateralTotals(String collateralSymbol);
+
+    @External(readonly = true)
+    Map<String, Object> getBorrowers(String collateralSymbol, String assetSymbol, int startId, int limit);
+
     @External(readonly = true)
     Map<String, Object> getAccountPositions(Address _owner);
 
+    @External(readonly = true)
+    List<Map<String, Object>> getLiquidationCandidates(String collateral, BigInteger priceHint, int limit);
+
+    @External
+    void backfillLiquidationIndex(int _batchSize);
+
+    @External(readonly = true)
+    boolean isLiquidationIndexBackfilled();
+
     @External(readonly = true)
     Map<String, Map<String, Object>> getAvailableAssets();
 
@@ -83,6 +99,12 @@ public interface Loans extends Name, TokenFallback, AdminAddress, DexAddress, Go
     @External(readonly = true)
     Map<String, BigInteger> getBalanceAndSupply(String _name, Address _owner);
 
+    @External(readonly = true)
+    Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners);
+
+    @External(readonly = true)
+    Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner);
+
     @External(readonly = true)
     BigInteger getBnusdValue(String _name);
 
@@ -121,6 +143,9 @@ public interface Loans extends Name, TokenFallback, AdminAddress, DexAddress, Go
     @External
     void liquidate(Address _owner, @Optional String _collateralSymbol);
 
+    @External
+    void liquidateBatch(Address[] owners, @Optional String collateralSymbol);
+
     @External
     void setLockingRatio(String _symbol, BigInteger _ratio);
 
@@ -169,6 +194,15 @@ public interface Loans extends Name, TokenFallback, AdminAddress, DexAddress, Go
     @External
     void setRedeemBatchSize(int _value);
 
+    @External
+    void setCompactSwapData(boolean _enabled);
+
+    @External(readonly = true)
+    boolean isCompactSwapData();
+
+    @External(readonly = true)
+    Map<String, Object> getRebalanceThroughput();
+
     @External(readonly = true)
     Map<String, Object> getParameters();
 }
@@ -38,6 +38,12 @@ public interface Rebalancing extends AdminAddress, BnusdAddress, DexAddress, Gov
     @External
     void setPriceDiffThreshold(BigInteger _value);
 
+    @External
+    void setRebalanceRounds(int _value);
+
+    @External(readonly = true)
+    int getRebalanceRounds();
+
     @External(readonly = true)
     List<Object> getRebalancingStatusFor(Address collateralAddress);
 
@@ -37,4 +37,10 @@ public interface Router extends Name, GovernanceAddress, AdminAddress, DexAddres
     @Payable
     @External
     void route(Address[] path, @Optional BigInteger _minReceive);
+
+    @External
+    void setCompactSwapData(boolean _enabled);
+
+    @External(readonly = true)
+    boolean isCompactSwapData();
 }
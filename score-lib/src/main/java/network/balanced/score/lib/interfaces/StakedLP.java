@@ -64,6 +64,12 @@ public interface StakedLP {
     @External(readonly = true)
     Map<String, BigInteger> getBalanceAndSupply(String _name, Address _owner);
 
+    @External(readonly = true)
+    Map<String, Object> getBalanceAndSupplyBatch(String _name, Address[] _owners);
+
+    @External(readonly = true)
+    Map<String, Map<String, BigInteger>> getBalancesAndSupplies(String[] _names, Address _owner);
+
     @External(readonly = true)
     BigInteger getBnusdValue(String _name);
 
@@ -44,6 +44,15 @@ public interface Staking {
     @External(readonly = true)
     BigInteger getTodayRate();
 
+    @External
+    void addRateSubscriber(Address _address);
+
+    @External
+    void removeRateSubscriber(Address _address);
+
+    @External(readonly = true)
+    List<Address> getRateSubscribers();
+
     @External
     void toggleStakingOn();
 
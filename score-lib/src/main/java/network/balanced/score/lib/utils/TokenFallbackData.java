@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.lib.utils;
+
+import score.Address;
+import score.ByteArrayObjectWriter;
+import score.Context;
+import score.ObjectReader;
+import scorex.util.ArrayList;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * Compact alternative to the JSON tokenFallback payloads. The data is an RLP list starting with the encoding
+ * version and a method code, followed by the arguments of the method:
+ * <blockquote>
+ * [VERSION, SWAP, toToken?, path?, minimumReceive?, receiver?]<br>
+ * [VERSION, DEPOSIT] / [VERSION, SWAP_ICX]<br>
+ * [VERSION, DONATE, toToken]<br>
+ * [VERSION, DEPOSIT_AND_BORROW, asset, amount?]
+ * </blockquote>
+ * An RLP list always starts with a byte of 0xc0 or above, so it can't be mistaken for JSON text.
+ */
+public class TokenFallbackData {
+    public static final int VERSION = 1;
+
+    public static final int DEPOSIT = 1;
+    public static final int SWAP = 2;
+    public static final int SWAP_ICX = 3;
+    public static final int DONATE = 4;
+    public static final int DEPOSIT_AND_BORROW = 5;
+
+    private static final String ENCODING = "RLPn";
+    private static final int RLP_LIST_PREFIX = 0xc0;
+
+    public int method;
+    public Address toToken;
+    public Address[] path;
+    public BigInteger minimumReceive;
+    public Address receiver;
+    public String asset;
+    public BigInteger amount;
+
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length > 0 && (data[0] & 0xff) >= RLP_LIST_PREFIX;
+    }
+
+    public static byte[] encodeSwap(Address toToken, Address[] path, BigInteger minimumReceive, Address receiver) {
+        ByteArrayObjectWriter writer = Context.newByteArrayObjectWriter(ENCODING);
+        writer.beginList(6);
+        writer.write(VERSION);
+        writer.write(SWAP);
+        writer.writeNullable(toToken);
+        if (path == null) {
+            writer.writeNull();
+        } else {
+            writer.beginNullableList(path.length);
+            for (Address token : path) {
+                writer.writeNullable(token);
+            }
+            writer.end();
+        }
+        writer.writeNullable(minimumReceive);
+        writer.writeNullable(receiver);
+        writer.end();
+        return writer.toByteArray();
+    }
+
+    public static byte[] encodeDeposit() {
+        return encodeMethod(DEPOSIT);
+    }
+
+    public static byte[] encodeSwapIcx() {
+        return encodeMethod(SWAP_ICX);
+    }
+
+    public static byte[] encodeDonate(Address toToken) {
+        ByteArrayObjectWriter writer = Context.newByteArrayObjectWriter(ENCODING);
+        writer.beginList(3);
+        writer.write(VERSION);
+        writer.write(DONATE);
+        writer.write(toToken);
+        writer.end();
+        return writer.toByteArray();
+    }
+
+    public static byte[] encodeDepositAndBorrow(String asset, BigInteger amount) {
+        ByteArrayObjectWriter writer = Context.newByteArrayObjectWriter(ENCODING);
+        writer.beginList(4);
+        writer.write(VERSION);
+        writer.write(DEPOSIT_AND_BORROW);
+        writer.write(asset);
+        writer.writeNullable(amount);
+        writer.end();
+        return writer.toByteArray();
+    }
+
+    private static byte[] encodeMethod(int method) {
+        ByteArrayObjectWriter writer = Context.newByteArrayObjectWriter(ENCODING);
+        writer.beginList(2);
+        writer.write(VERSION);
+        writer.write(method);
+        writer.end();
+        return writer.toByteArray();
+    }
+
+    public static TokenFallbackData decode(byte[] data) {
+        ObjectReader reader = Context.newByteArrayObjectReader(ENCODING, data);
+        reader.beginList();
+        int version = reader.readInt();
+        Context.require(version == VERSION, "Unsupported token fallback data version: " + version);
+
+        TokenFallbackData decoded = new TokenFallbackData();
+        decoded.method = reader.readInt();
+        switch (decoded.method) {
+            case SWAP:
+                decoded.toToken = reader.readNullable(Address.class);
+                if (reader.beginNullableList()) {
+                    List<Address> path = new ArrayList<>();
+                    while (reader.hasNext()) {
+                        path.add(reader.readNullable(Address.class));
+                    }
+                    reader.end();
+
+                    decoded.path = new Address[path.size()];
+                    for (int i = 0; i < path.size(); i++) {
+                        decoded.path[i] = path.get(i);
+                    }
+                }
+                decoded.minimumReceive = reader.readNullable(BigInteger.class);
+                decoded.receiver = reader.readNullable(Address.class);
+                break;
+            case DONATE:
+                decoded.toToken = reader.readAddress();
+                break;
+            case DEPOSIT_AND_BORROW:
+                decoded.asset = reader.readString();
+                decoded.amount = reader.readNullable(BigInteger.class);
+                break;
+            case DEPOSIT:
+            case SWAP_ICX:
+                break;
+            default:
+                Context.revert("Unsupported token fallback method: " + decoded.method);
+        }
+        reader.end();
+
+        return decoded;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2022-2022 Balanced.network.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package network.balanced.score.lib.utils;
+
+import com.iconloop.score.test.ServiceManager;
+import com.iconloop.score.test.TestBase;
+import org.junit.jupiter.api.Test;
+import score.Address;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenFallbackDataTest extends TestBase {
+
+    private static final ServiceManager sm = getServiceManager();
+    private static final Address token1 = sm.createAccount().getAddress();
+    private static final Address token2 = sm.createAccount().getAddress();
+    private static final Address receiver = sm.createAccount().getAddress();
+
+    @Test
+    public void swapRoundTrip() {
+        byte[] data = TokenFallbackData.encodeSwap(token1, null, BigInteger.TEN, receiver);
+        assertTrue(TokenFallbackData.isEncoded(data));
+
+        TokenFallbackData decoded = TokenFallbackData.decode(data);
+        assertEquals(TokenFallbackData.SWAP, decoded.method);
+        assertEquals(token1, decoded.toToken);
+        assertNull(decoded.path);
+        assertEquals(BigInteger.TEN, decoded.minimumReceive);
+        assertEquals(receiver, decoded.receiver);
+
+        decoded = TokenFallbackData.decode(TokenFallbackData.encodeSwap(null, new Address[]{token1, null, token2},
+                null, null));
+        assertNull(decoded.toToken);
+        assertArrayEquals(new Address[]{token1, null, token2}, decoded.path);
+        assertNull(decoded.minimumReceive);
+        assertNull(decoded.receiver);
+    }
+
+    @Test
+    public void otherMethodsRoundTrip() {
+        assertEquals(TokenFallbackData.DEPOSIT, TokenFallbackData.decode(TokenFallbackData.encodeDeposit()).method);
+        assertEquals(TokenFallbackData.SWAP_ICX, TokenFallbackData.decode(TokenFallbackData.encodeSwapIcx()).method);
+
+        TokenFallbackData decoded = TokenFallbackData.decode(TokenFallbackData.encodeDonate(token2));
+        assertEquals(TokenFallbackData.DONATE, decoded.method);
+        assertEquals(token2, decoded.toToken);
+
+        decoded = TokenFallbackData.decode(TokenFallbackData.encodeDepositAndBorrow("bnUSD", BigInteger.TWO));
+        assertEquals(TokenFallbackData.DEPOSIT_AND_BORROW, decoded.method);
+        assertEquals("bnUSD", decoded.asset);
+        assertEquals(BigInteger.TWO, decoded.amount);
+    }
+
+    @Test
+    public void jsonIsNotEncoded() {
+        assertFalse(TokenFallbackData.isEncoded("{\"method\": \"_deposit\"}".getBytes()));
+        assertFalse(TokenFallbackData.isEncoded(" {}".getBytes()));
+        assertFalse(TokenFallbackData.isEncoded(new byte[0]));
+    }
+}
@@ -247,13 +247,29 @@ public class BoostedBalnImpl extends AbstractBoostedBaln {
 
     @External(readonly = true)
     public BigInteger balanceOf(Address _owner, @Optional BigInteger timestamp) {
-        UnsignedBigInteger uTimestamp;
+        return balanceOfAtTimestamp(_owner, getTimestamp(timestamp));
+    }
+
+    @External(readonly = true)
+    public List<BigInteger> balanceOfBatch(Address[] _owners, @Optional BigInteger timestamp) {
+        UnsignedBigInteger uTimestamp = getTimestamp(timestamp);
+        List<BigInteger> balances = new ArrayList<>();
+        for (Address owner : _owners) {
+            balances.add(balanceOfAtTimestamp(owner, uTimestamp));
+        }
+
+        return balances;
+    }
+
+    private UnsignedBigInteger getTimestamp(BigInteger timestamp) {
         if (timestamp == null || timestamp.equals(BigInteger.ZERO)) {
-            uTimestamp = UnsignedBigInteger.valueOf(Context.getBlockTimestamp());
-        } else {
-            uTimestamp = new UnsignedBigInteger(timestamp);
+            return UnsignedBigInteger.valueOf(Context.getBlockTimestamp());
         }
 
+        return new UnsignedBigInteger(timestamp);
+    }
+
+    private BigInteger balanceOfAtTimestamp(Address _owner, UnsignedBigInteger uTimestamp) {
         BigInteger epoch = this.userPointEpoch.getOrDefault(_owner, BigInteger.ZERO);
         if (epoch.equals(BigInteger.ZERO)) {
             return BigInteger.ZERO;
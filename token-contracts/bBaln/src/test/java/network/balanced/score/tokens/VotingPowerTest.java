@@ -26,6 +26,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import score.Address;
 
 import java.lang.reflect.Field;
 import java.math.BigInteger;
@@ -140,6 +141,8 @@ public class VotingPowerTest extends AbstractBoostedBalnTest {
         assertEquals(amount.divide(MAX_TIME).multiply(time), alice_balance);
         assertEquals(amount.divide(MAX_TIME).multiply(time), total_balance);
         assertEquals(BigInteger.ZERO, bob_balance);
+        assertEquals(List.of(alice_balance, bob_balance), bBALNScore.call("balanceOfBatch",
+                new Address[]{alice.getAddress(), bob.getAddress()}, BigInteger.ZERO));
 
 
         BigInteger t0 = getBlockTimestamp();